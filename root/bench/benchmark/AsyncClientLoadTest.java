@@ -0,0 +1,62 @@
+package benchmark;
+
+import client.AsyncClient;
+import server.ServerConfig;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Kërkesa /info ndaj një serveri që po punon me AsyncClient, me 1 (si stop-and-wait), 16 dhe 64
+ * kërkesa njëkohësisht. Me -d shkarkon edhe file-t e dhëna paralelisht.
+ *
+ * Përdorimi: java -cp root/bench/target/benchmarks.jar benchmark.AsyncClientLoadTest [kërkesa] [file] [-d file...]
+ */
+public class AsyncClientLoadTest {
+    private static final int[] IN_FLIGHT = {1, 16, 64};
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        String file = args.length > 1 ? args[1] : "test1";
+        InetAddress server = InetAddress.getLoopbackAddress();
+
+        System.out.printf("%-10s %12s %12s %8s%n", "në fluturim", "req/s", "srtt µs", "gabime");
+        for (int inFlight : IN_FLIGHT) {
+            try (AsyncClient client = new AsyncClient(server, ServerConfig.PORT, inFlight, 1)) {
+                client.request("/info " + file).join();
+
+                List<CompletableFuture<String>> futures = new ArrayList<>(requests);
+                long start = System.nanoTime();
+                for (int i = 0; i < requests; i++) futures.add(client.request("/info " + file));
+                int errors = 0;
+                for (CompletableFuture<String> future : futures) {
+                    try {
+                        if (future.join().startsWith("Gabim")) errors++;
+                    } catch (RuntimeException e) {
+                        errors++;
+                    }
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-10d %12.0f %12d %8d%n", inFlight, requests / seconds,
+                        client.smoothedRttMicros(), errors);
+            }
+        }
+
+        int downloads = 0;
+        for (int i = 2; i < args.length; i++) if (!args[i].equals("-d")) downloads++;
+        if (downloads == 0) return;
+
+        try (AsyncClient client = new AsyncClient(server, ServerConfig.PORT)) {
+            List<CompletableFuture<Path>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 2; i < args.length; i++) {
+                if (!args[i].equals("-d")) futures.add(client.download(args[i], Path.of(ServerConfig.DOWNLOADS)));
+            }
+            for (CompletableFuture<Path> future : futures) System.out.println("Shkarkuar: " + future.join());
+            System.out.printf("%d shkarkime në %.2f s%n", futures.size(), (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package benchmark;
+
+import client.AsyncClient;
+import common.TransferFrame;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Paketa/s dhe syscalls/MB në loopback me grupim të I/O-së të fikur (udp.batch=1) dhe të ndezur. Serveri
+ * niset me udp.core=nio si proces më vete për çdo konfigurim; numëruesit lexohen nga /metrics. Matja e parë
+ * dërgon me breshëri frame UPLOAD për një transferim që nuk ekziston (serveri vetëm i lexon dhe i hedh),
+ * e dyta shkarkon një file disa herë.
+ *
+ * Përdorimi: java -cp root/bench/target/benchmarks.jar benchmark.BatchingLoadTest [MB e file-it] [shkarkime] [datagrame] [konfigurime...]
+ */
+public class BatchingLoadTest {
+    private static final int SERVER_PORT = 5002;
+    private static final int ADMIN_PORT = 9190;
+
+    public static void main(String[] args) throws Exception {
+        long fileBytes = (long) ((args.length > 0 ? Double.parseDouble(args[0]) : 32) * 1024 * 1024);
+        int downloads = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int datagrams = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+        String[] configs = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length)
+                : new String[]{"udp.batch=1", "udp.batch=32"};
+
+        System.out.printf("%-16s %12s %10s %12s | %10s %12s %12s%n", "konfigurimi", "marrje pkt/s", "pranuar",
+                "syscalls/pkt", "MB/s", "dërgim pkt/s", "syscalls/MB");
+        for (String config : configs) {
+            ServerProcess server = ServerProcess.start("me " + config, fileBytes, config, "udp.core=nio",
+                    "udp.adminPort=" + ADMIN_PORT);
+            try {
+                Counters before = scrape();
+                long start = System.nanoTime();
+                blast(datagrams);
+                Counters afterBlast = awaitQuiet(before);
+                double blastSeconds = (System.nanoTime() - start) / 1e9;
+                long received = (afterBlast.bytesIn - before.bytesIn) / (TransferFrame.DATA_HEADER_SIZE + 1024);
+                long receiveCalls = afterBlast.selects - before.selects + afterBlast.receives - before.receives;
+
+                Counters beforeDownload = scrape();
+                start = System.nanoTime();
+                long bytes = download(ServerProcess.FIXTURE, downloads);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Counters after = scrape();
+                long sends = after.sends - beforeDownload.sends;
+                long syscalls = after.total() - beforeDownload.total();
+                double megabytes = (after.bytesIn + after.bytesOut - beforeDownload.bytesIn - beforeDownload.bytesOut)
+                        / (1024.0 * 1024.0);
+
+                System.out.printf("%-16s %12.0f %9.1f%% %12.2f | %10.2f %12.0f %12.1f%n", config,
+                        received / blastSeconds, 100.0 * received / datagrams,
+                        received > 0 ? (double) receiveCalls / received : 0.0,
+                        bytes / seconds / (1024.0 * 1024.0), sends / seconds, syscalls / megabytes);
+            } finally {
+                server.close();
+            }
+        }
+    }
+
+    private static void blast(int datagrams) throws Exception {
+        byte[] frame = new byte[TransferFrame.DATA_HEADER_SIZE + 1024];
+        InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), SERVER_PORT);
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            ByteBuffer data = ByteBuffer.wrap(frame);
+            for (int i = 0; i < datagrams; i++) {
+                TransferFrame.writeHeader(frame, 0, TransferFrame.UPLOAD, Integer.MAX_VALUE, i);
+                channel.send(data.clear(), target);
+            }
+        }
+    }
+
+    // serveri ka mbaruar së lexuari kur numëruesi i bytes nuk lëviz më
+    private static Counters awaitQuiet(Counters before) throws Exception {
+        Counters last = before;
+        while (true) {
+            Thread.sleep(100);
+            Counters now = scrape();
+            if (now.bytesIn == last.bytesIn && now.bytesIn > before.bytesIn) return now;
+            last = now;
+        }
+    }
+
+    private static long download(String file, int times) throws Exception {
+        Path directory = Files.createTempDirectory("batching");
+        long bytes = 0;
+        try (AsyncClient client = new AsyncClient(InetAddress.getLoopbackAddress(), SERVER_PORT, 4, 1)) {
+            for (int i = 0; i < times; i++) {
+                Path path = client.download(file, directory).get(120, TimeUnit.SECONDS);
+                bytes += Files.size(path);
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path leftover : files.toList()) Files.delete(leftover);
+            }
+            Files.delete(directory);
+        }
+        return bytes;
+    }
+
+    private static Counters scrape() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        String body = http.send(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + ADMIN_PORT + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        return new Counters(value(body, "udp_syscalls_total{call=\"select\"}"),
+                value(body, "udp_syscalls_total{call=\"receive\"}"),
+                value(body, "udp_syscalls_total{call=\"send\"}"),
+                value(body, "udp_io_bytes_total{direction=\"in\"}"),
+                value(body, "udp_io_bytes_total{direction=\"out\"}"));
+    }
+
+    private static long value(String body, String metric) {
+        for (String line : body.split("\n")) {
+            if (line.startsWith(metric + " ")) return Long.parseLong(line.substring(metric.length() + 1).trim());
+        }
+        throw new IllegalStateException("Mungon metrika " + metric);
+    }
+
+    private record Counters(long selects, long receives, long sends, long bytesIn, long bytesOut) {
+        long total() {
+            return selects + receives + sends;
+        }
+    }
+}
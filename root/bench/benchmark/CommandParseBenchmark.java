@@ -0,0 +1,111 @@
+package benchmark;
+
+import common.Command;
+import common.CommandFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mat koston e parse + dispatch për një përzierje komandash: zinxhiri i vjetër me startsWith,
+ * protokolli tekst me tabelë dhe protokolli binar me opcode. Çdo thirrje kalon të 8 komandat,
+ * kështu që rezultati del për komandë; opcode dhe argumentet shkojnë te Blackhole.
+ *
+ * Përdorimi: java -jar root/bench/target/benchmarks.jar CommandParseBenchmark [-prof gc]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandParseBenchmark {
+    private static final String[] COMMANDS = {
+            "/list", "/read raport_2024.txt", "/search foto", "/info backup.tar",
+            "/download video.mp4", "STATS", "/read raport_2024.txt 4096 1024", "/page 17 64 64"
+    };
+
+    private final ByteBuffer[] text = new ByteBuffer[COMMANDS.length];
+    private final ByteBuffer[] binary = new ByteBuffer[COMMANDS.length];
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            text[i] = ByteBuffer.wrap(COMMANDS[i].getBytes(StandardCharsets.UTF_8));
+            String rest = Command.argumentsOf(COMMANDS[i]);
+            byte[] frame = new byte[512];
+            int length = CommandFrame.encodeRequest(frame, Command.fromText(COMMANDS[i]), i,
+                    rest.isEmpty() ? new String[0] : rest.split("\\s+"));
+            binary[i] = ByteBuffer.wrap(frame, 0, length);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void legacy(Blackhole bh) {
+        for (ByteBuffer packet : text) {
+            String msg = StandardCharsets.UTF_8.decode(packet.duplicate()).toString().trim();
+            String args;
+            int op;
+            if (msg.startsWith("/login ")) { op = 2; args = msg.substring(7).trim(); }
+            else if (msg.equalsIgnoreCase("/list")) { op = 3; args = ""; }
+            else if (msg.startsWith("/read ")) { op = 4; args = msg.substring(6).trim(); }
+            else if (msg.startsWith("/page ")) { op = 5; args = msg.substring(6).trim(); }
+            else if (msg.startsWith("/download ")) { op = 6; args = msg.substring(10).trim(); }
+            else if (msg.startsWith("/delete ")) { op = 7; args = msg.substring(8).trim(); }
+            else if (msg.startsWith("/upload_begin ")) { op = 8; args = msg.substring(14).trim(); }
+            else if (msg.startsWith("/upload_commit ")) { op = 9; args = msg.substring(15).trim(); }
+            else if (msg.startsWith("/search ")) { op = 10; args = msg.substring(8).trim(); }
+            else if (msg.startsWith("/info ")) { op = 11; args = msg.substring(6).trim(); }
+            else if (msg.equalsIgnoreCase("STATS")) { op = 12; args = ""; }
+            else { op = 0; args = msg; }
+            bh.consume(op);
+            bh.consume(args);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void text(Blackhole bh) {
+        for (ByteBuffer packet : text) {
+            String msg = CommandFrame.text(packet, packet.position(), packet.remaining()).trim();
+            bh.consume(Command.fromText(msg).opcode());
+            bh.consume(Command.argumentsOf(msg));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void binary(Blackhole bh) {
+        for (ByteBuffer packet : binary) {
+            if (!CommandFrame.isCommand(packet)) continue;
+            bh.consume(CommandFrame.opcode(packet));
+            bh.consume(CommandFrame.arguments(packet));
+        }
+    }
+
+    // komandat pa argumente tekst (p.sh. /list, STATS) nuk alokojnë fare
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void binaryHeaderOnly(Blackhole bh) {
+        for (ByteBuffer packet : binary) {
+            if (!CommandFrame.isCommand(packet)) continue;
+            bh.consume(CommandFrame.opcode(packet));
+            bh.consume(CommandFrame.requestId(packet));
+            bh.consume(CommandFrame.fieldCount(packet));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.FileManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Krahason /list dhe /search me skanim të plotë të direktorisë kundrejt indeksit në memorie,
+ * për direktori me 1k dhe 100k file.
+ *
+ * Përdorimi: java -jar root/bench/target/benchmarks.jar DirectoryIndexBenchmark [-p files=100000]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class DirectoryIndexBenchmark {
+    private static final String[] WORDS = {"raport", "foto", "projekt", "backup", "shenime", "video", "data", "log"};
+
+    @State(Scope.Benchmark)
+    public static class Directory {
+        @Param({"1000", "100000"})
+        int files;
+
+        Path dir;
+        FileManager manager;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("index-bench");
+            Random random = new Random(42);
+            for (int i = 0; i < files; i++) {
+                String name = WORDS[random.nextInt(WORDS.length)] + "_" + i + ".txt";
+                Files.createFile(dir.resolve(name));
+            }
+            manager = new FileManager(dir.toString());
+            if (!sorted(manager.scanFiles()).equals(sorted(manager.listFiles()))) {
+                System.out.println("Kujdes: rezultatet ndryshojnë për /list");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            HotPathBenchmarks.deleteTree(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Search {
+        @Param({"log", "4217", "mungon"})
+        String query;
+
+        @Setup(Level.Trial)
+        public void setup(Directory directory) {
+            if (!sorted(directory.manager.scanSearch(query)).equals(sorted(directory.manager.searchFiles(query)))) {
+                System.out.println("Kujdes: rezultatet ndryshojnë për /search " + query);
+            }
+        }
+    }
+
+    @Benchmark
+    public String listScan(Directory directory) {
+        return directory.manager.scanFiles();
+    }
+
+    @Benchmark
+    public String listIndex(Directory directory) {
+        return directory.manager.listFiles();
+    }
+
+    @Benchmark
+    public String searchScan(Directory directory, Search search) {
+        return directory.manager.scanSearch(search.query);
+    }
+
+    @Benchmark
+    public String searchIndex(Directory directory, Search search) {
+        return directory.manager.searchFiles(search.query);
+    }
+
+    private static String sorted(String response) {
+        return response.lines().sorted().collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,137 @@
+package benchmark;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Nis serverin si proces më vete për secilin mod të dispatch-it dhe mat kërkesat/sek dhe latencën p99.
+ * Një mod shkruhet si "dispatch" ose "core:dispatch[:receivers]", p.sh. "pool", "nio:virtual", "nio:pool:4".
+ *
+ * Përdorimi: java -cp root/bench/target/benchmarks.jar benchmark.DispatchLoadTest [kërkesa për klient] [klientë] [burst] [mode...]
+ */
+public class DispatchLoadTest {
+    private static final int PORT = 5002;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int burst = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        String[] modes = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length)
+                : new String[]{"thread", "pool", "virtual", "nio:pool", "nio:virtual"};
+
+        System.out.printf("%-14s %12s %10s %10s %10s %8s%n", "mode", "req/s", "p50 µs", "p99 µs", "max µs", "humbur");
+        for (String mode : modes) {
+            String[] spec = mode.split(":");
+            String core = spec.length > 1 ? spec[0] : "blocking";
+            String dispatch = spec.length > 1 ? spec[1] : spec[0];
+            String receivers = spec.length > 2 ? spec[2] : "1";
+            ServerProcess server = ServerProcess.start("për modin " + mode, "udp.core=" + core,
+                    "udp.dispatch=" + dispatch, "udp.receivers=" + receivers);
+            try {
+                Result result = runLoad(clients, requests, burst);
+                System.out.printf("%-14s %12.0f %10d %10d %10d %8d%n", mode, result.requestsPerSecond(),
+                        result.percentile(50) / 1000, result.percentile(99) / 1000,
+                        result.percentile(100) / 1000, result.lost);
+            } finally {
+                server.close();
+            }
+        }
+    }
+
+    private static Result runLoad(int clients, int requests, int burst) throws Exception {
+        List<long[]> samples = new ArrayList<>();
+        long[] lost = new long[clients];
+        Thread[] threads = new Thread[clients];
+        long start = System.nanoTime();
+
+        for (int c = 0; c < clients; c++) {
+            long[] latencies = new long[requests];
+            samples.add(latencies);
+            int index = c;
+            threads[c] = new Thread(() -> lost[index] = runClient(latencies, burst));
+            threads[c].start();
+        }
+        for (Thread t : threads) t.join();
+        long elapsed = System.nanoTime() - start;
+
+        int total = 0;
+        for (long[] s : samples) total += s.length;
+        long[] all = new long[total];
+        int pos = 0;
+        for (long[] s : samples) {
+            System.arraycopy(s, 0, all, pos, s.length);
+            pos += s.length;
+        }
+        long lostTotal = Arrays.stream(lost).sum();
+        return new Result(all, lostTotal, elapsed);
+    }
+
+    private static long runClient(long[] latencies, int burst) {
+        long lost = 0;
+        try (DatagramSocket socket = new DatagramSocket()) {
+            InetAddress server = InetAddress.getLoopbackAddress();
+            socket.setSoTimeout(2000);
+            byte[] buffer = new byte[65507];
+            DatagramPacket in = new DatagramPacket(buffer, buffer.length);
+
+            byte[] ping = "PING".getBytes(StandardCharsets.UTF_8);
+            socket.send(new DatagramPacket(ping, ping.length, server, PORT));
+            socket.receive(in);
+
+            byte[] request = "/info test1".getBytes(StandardCharsets.UTF_8);
+            DatagramPacket out = new DatagramPacket(request, request.length, server, PORT);
+            long[] sentAt = new long[burst];
+
+            for (int done = 0; done < latencies.length; ) {
+                int n = Math.min(burst, latencies.length - done);
+                for (int i = 0; i < n; i++) {
+                    sentAt[i] = System.nanoTime();
+                    socket.send(out);
+                }
+                // përgjigjet nuk kanë id, prandaj çiftohen me kërkesat sipas radhës (FIFO)
+                for (int i = 0; i < n; i++) {
+                    try {
+                        socket.receive(in);
+                        latencies[done + i] = System.nanoTime() - sentAt[i];
+                    } catch (SocketTimeoutException e) {
+                        lost += n - i;
+                        for (int j = i; j < n; j++) latencies[done + j] = Long.MAX_VALUE;
+                        break;
+                    }
+                }
+                done += n;
+            }
+        } catch (Exception e) {
+            System.err.println("Gabim në klient: " + e.getMessage());
+        }
+        return lost;
+    }
+
+    private static class Result {
+        private final long[] sorted;
+        private final long lost;
+        private final long elapsedNanos;
+
+        Result(long[] latencies, long lost, long elapsedNanos) {
+            this.sorted = Arrays.stream(latencies).filter(l -> l != Long.MAX_VALUE && l > 0).sorted().toArray();
+            this.lost = lost;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double requestsPerSecond() {
+            return sorted.length / (elapsedNanos / 1e9);
+        }
+
+        long percentile(double p) {
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package benchmark;
+
+import common.ReceiveWindow;
+import common.TransferFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.ClientHandler;
+import server.PacketSender;
+import server.TransferManager;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mat kohën dhe alokimin në heap për MB të shërbyer nga rruga e download-it: varianti i vjetër me Base64
+ * krahasuar me leximin nga FileChannel dhe me file-t e hartuar në memorie, me frame heap ose direkt.
+ * Çdo thirrje shërben një file prej 64 MB, kështu që rezultatet dalin për MB; alokimi lexohet
+ * nga gc.alloc.rate.norm.
+ *
+ * Përdorimi: java -jar root/bench/target/benchmarks.jar DownloadAllocationBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownloadAllocationBenchmark {
+    private static final int MEGABYTES = 64;
+
+    private Path file;
+    private DatagramChannel sink;
+    private DatagramChannel out;
+    private InetSocketAddress target;
+    private ClientHandler client;
+    private TransferManager read;
+    private TransferManager mapped;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("download-bench", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        for (int i = 0; i < MEGABYTES; i++) {
+            Files.write(file, block, StandardOpenOption.APPEND);
+        }
+        sink = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        out = DatagramChannel.open();
+        target = (InetSocketAddress) sink.getLocalAddress();
+        client = new ClientHandler(target.getAddress(), target.getPort());
+        read = new TransferManager(null, null, false);
+        mapped = new TransferManager(null, null, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        out.close();
+        sink.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEGABYTES)
+    public void base64() throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        String response = "DOWNLOAD:" + file.getFileName() + ":" + Base64.getEncoder().encodeToString(data);
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        // një datagram i vetëm nuk mund ta mbajë, prandaj dërgohet në copa sa lejon UDP
+        for (int pos = 0; pos < bytes.length; pos += 65000) {
+            out.send(ByteBuffer.wrap(bytes, pos, Math.min(65000, bytes.length - pos)), target);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEGABYTES)
+    public void readHeap() throws IOException {
+        chunkedDownload(read, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEGABYTES)
+    public void readDirect() throws IOException {
+        chunkedDownload(read, true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEGABYTES)
+    public void mmapHeap() throws IOException {
+        chunkedDownload(mapped, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEGABYTES)
+    public void mmapDirect() throws IOException {
+        chunkedDownload(mapped, true);
+    }
+
+    private void chunkedDownload(TransferManager manager, boolean direct) throws IOException {
+        ReceiveWindow[] received = new ReceiveWindow[1];
+        PacketSender sender = new PacketSender() {
+            @Override
+            public void send(ByteBuffer data, InetSocketAddress target) throws IOException {
+                received[0].markReceived(TransferFrame.sequence(data));
+                out.send(data, target);
+            }
+
+            @Override
+            public boolean prefersDirect() {
+                return direct;
+            }
+        };
+
+        String[] header = manager.startDownload(sender, client, file, "bench.bin").split(":");
+        int id = Integer.parseInt(header[1]);
+        int chunkCount = Integer.parseInt(header[4]);
+        int window = Integer.parseInt(header[5]);
+
+        received[0] = new ReceiveWindow(chunkCount, window);
+        byte[] ack = new byte[ReceiveWindow.ackFrameSize(window)];
+        ByteBuffer ackFrame = ByteBuffer.wrap(ack);
+        while (!received[0].isComplete()) {
+            ackFrame.clear().limit(received[0].writeAck(ack, id));
+            manager.handleFrame(sender, ackFrame, client);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import client.AsyncClient;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Egress-i i serverit sipas numrit të marrësve që shkarkojnë njëkohësisht të njëjtin file, me /download
+ * (një stream unicast për klient) dhe me /fanout (një stream multicast i përbashkët plus riparime unicast).
+ * Serveri niset si proces më vete me grupin multicast në loopback; egress-i lexohet nga /metrics.
+ *
+ * Përdorimi: java -cp root/bench/target/benchmarks.jar benchmark.FanoutLoadTest [MB e file-it] [MB/s e grupit] [marrës...]
+ */
+public class FanoutLoadTest {
+    private static final int SERVER_PORT = 5002;
+    private static final int ADMIN_PORT = 9191;
+
+    public static void main(String[] args) throws Exception {
+        long fileBytes = (long) ((args.length > 0 ? Double.parseDouble(args[0]) : 16) * 1024 * 1024);
+        long groupRate = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 16) * 1024 * 1024);
+        int[] receivers = {1, 2, 4, 8, 16};
+        if (args.length > 2) {
+            receivers = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) receivers[i - 2] = Integer.parseInt(args[i]);
+        }
+
+        ServerProcess server = ServerProcess.start("me multicast në loopback", fileBytes, line -> {
+            if (line.contains("multicast")) System.out.println("[server] " + line);
+        }, "udp.fanoutInterface=lo", "udp.fanoutBps=" + groupRate, "udp.maxClients=256",
+                "udp.adminPort=" + ADMIN_PORT);
+        try {
+            System.out.printf("%-8s %-10s %12s %14s %10s%n", "marrës", "mënyra", "egress MB", "egress/file", "koha s");
+            for (int count : receivers) {
+                for (String command : new String[]{"download", "fanout"}) {
+                    long before = egressBytes();
+                    long start = System.nanoTime();
+                    long size = run(command, ServerProcess.FIXTURE, count);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    long egress = egressBytes() - before;
+                    System.out.printf("%-8d %-10s %12.2f %14.2f %10.2f%n", count, command,
+                            egress / (1024.0 * 1024.0), (double) egress / size, seconds);
+                }
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    // çdo marrës ka klientin e vet (socket, adresë), si klientë të veçantë në LAN
+    private static long run(String command, String file, int count) throws Exception {
+        List<AsyncClient> clients = new ArrayList<>();
+        List<Path> directories = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                clients.add(new AsyncClient(InetAddress.getLoopbackAddress(), SERVER_PORT, 4, 1));
+                directories.add(Files.createTempDirectory("fanout"));
+            }
+            List<CompletableFuture<Path>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                AsyncClient client = clients.get(i);
+                futures.add(command.equals("fanout") ? client.fanout(file, directories.get(i))
+                        : client.download(file, directories.get(i)));
+            }
+            long size = 0;
+            for (CompletableFuture<Path> future : futures) size = Files.size(future.get(120, TimeUnit.SECONDS));
+            return size;
+        } finally {
+            for (AsyncClient client : clients) client.close();
+            for (Path directory : directories) {
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path leftover : files.toList()) Files.delete(leftover);
+                }
+                Files.delete(directory);
+            }
+        }
+    }
+
+    private static long egressBytes() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        String body = http.send(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + ADMIN_PORT + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        String metric = "udp_io_bytes_total{direction=\"out\"} ";
+        for (String line : body.split("\n")) {
+            if (line.startsWith(metric)) return Long.parseLong(line.substring(metric.length()).trim());
+        }
+        throw new IllegalStateException("Mungon metrika " + metric);
+    }
+}
@@ -0,0 +1,109 @@
+package benchmark;
+
+import common.HashRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sa mirë i ndan HashRing çelësat mes shard-eve dhe sa çelësa lëvizin kur shtohet ose hiqet një shard, sipas
+ * numrit të nyjeve virtuale. Ngarkesa jepet si max/mesatare, lëvizjet krahasohen me minimumin 1/(N+1) për
+ * shtimin dhe 1/N për heqjen. Benchmark-u JMH mat koston e owner() për çdo kërkesë.
+ *
+ * Përdorimi: java -cp root/bench/target/benchmarks.jar benchmark.HashRingBenchmark [çelësa] [vnodes...]
+ * për shpërndarjen, java -jar root/bench/target/benchmarks.jar HashRingBenchmark për kohën e kërkimit
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class HashRingBenchmark {
+    private static final int[] SHARDS = {3, 4, 8, 16};
+
+    @Param({"1", "16", "160"})
+    int vnodes;
+
+    @Param({"3", "16"})
+    int shards;
+
+    private HashRing<String> ring;
+    private String[] names;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ring = new HashRing<>(vnodes);
+        for (int i = 0; i < shards; i++) ring.add("127.0.0.1:" + (5101 + i));
+        names = new String[1024];
+        for (int i = 0; i < names.length; i++) names[i] = "file-" + i + ".bin";
+    }
+
+    @Benchmark
+    public String owner() {
+        return ring.owner(names[cursor++ & 1023]);
+    }
+
+    public static void main(String[] args) {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int[] vnodes = {1, 16, 160};
+        if (args.length > 1) {
+            vnodes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) vnodes[i - 1] = Integer.parseInt(args[i]);
+        }
+
+        System.out.printf("%-8s %-8s %12s %14s %10s %14s %10s%n", "shard-e", "vnodes", "max/mesatare",
+                "lëvizur +1", "minimumi", "lëvizur -1", "minimumi");
+        for (int shards : SHARDS) {
+            for (int v : vnodes) {
+                HashRing<String> ring = new HashRing<>(v);
+                for (int i = 0; i < shards; i++) ring.add("127.0.0.1:" + (5101 + i));
+                String[] before = owners(ring, keys);
+
+                Map<String, Integer> load = new HashMap<>();
+                for (String owner : before) load.merge(owner, 1, Integer::sum);
+                int max = load.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+
+                String added = "127.0.0.1:" + (5101 + shards);
+                ring.add(added);
+                double movedOnAdd = moved(before, owners(ring, keys), keys);
+                ring.remove(added);
+
+                ring.remove("127.0.0.1:5101");
+                double movedOnRemove = moved(before, owners(ring, keys), keys);
+
+                System.out.printf("%-8d %-8d %12.2f %13.1f%% %9.1f%% %13.1f%% %9.1f%%%n", shards, v,
+                        max / ((double) keys / shards), movedOnAdd * 100, 100.0 / (shards + 1),
+                        movedOnRemove * 100, 100.0 / shards);
+            }
+        }
+    }
+
+    private static String[] owners(HashRing<String> ring, int keys) {
+        String[] owners = new String[keys];
+        for (int i = 0; i < keys; i++) owners[i] = ring.owner("file-" + i + ".bin");
+        return owners;
+    }
+
+    private static double moved(String[] before, String[] after, int keys) {
+        int moved = 0;
+        for (int i = 0; i < keys; i++) {
+            if (!before[i].equals(after[i])) moved++;
+        }
+        return (double) moved / keys;
+    }
+}
@@ -0,0 +1,248 @@
+package benchmark;
+
+import common.Command;
+import common.CommandFrame;
+import common.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.ChunkSource;
+import server.ClientHandler;
+import server.ContentCache;
+import server.FileManager;
+import server.MappedFileCache;
+import server.ServerConfig;
+import server.ServerMain;
+import server.TrafficMonitor;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark-et JMH të rrugëve kryesore të serverit: parse i komandave, përgatitja e download-it sipas
+ * madhësisë së file-it, numërimi i trafikut, formatFileSize dhe një kërkesë/përgjigje e plotë në loopback.
+ *
+ * Përdorimi: java -jar root/bench/target/benchmarks.jar HotPathBenchmarks [-t 8] [-rf json -rff rezultate.json]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class HotPathBenchmarks {
+    private static final String[] COMMANDS = {
+            "/list", "/read raport_2024.txt", "/search foto", "/info backup.tar",
+            "/download video.mp4", "STATS", "/read raport_2024.txt 4096 1024", "/page 17 64 64"
+    };
+
+    @State(Scope.Thread)
+    public static class Commands {
+        ByteBuffer[] text = new ByteBuffer[COMMANDS.length];
+        ByteBuffer[] binary = new ByteBuffer[COMMANDS.length];
+        int next;
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < COMMANDS.length; i++) {
+                text[i] = ByteBuffer.wrap(COMMANDS[i].getBytes(StandardCharsets.UTF_8));
+                String rest = Command.argumentsOf(COMMANDS[i]);
+                byte[] frame = new byte[512];
+                int length = CommandFrame.encodeRequest(frame, Command.fromText(COMMANDS[i]), i,
+                        rest.isEmpty() ? new String[0] : rest.split("\\s+"));
+                binary[i] = ByteBuffer.wrap(frame, 0, length);
+            }
+        }
+    }
+
+    @Benchmark
+    public int commandParseText(Commands commands) {
+        ByteBuffer packet = commands.text[commands.next++ & 7];
+        String msg = CommandFrame.text(packet, packet.position(), packet.remaining()).trim();
+        return Command.fromText(msg).opcode() + Command.argumentsOf(msg).length();
+    }
+
+    @Benchmark
+    public int commandParseBinary(Commands commands) {
+        ByteBuffer packet = commands.binary[commands.next++ & 7];
+        return CommandFrame.opcode(packet) + CommandFrame.arguments(packet).length();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Download {
+        @Param({"4096", "1048576", "67108864"})
+        int fileSize;
+
+        Path dir;
+        FileManager fileManager;
+        MappedFileCache mapped;
+        String name;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("bench-download");
+            name = "file-" + fileSize;
+            Path file = dir.resolve(name);
+            byte[] block = new byte[1024 * 1024];
+            new Random(7).nextBytes(block);
+            for (int written = 0; written < fileSize; written += block.length) {
+                Files.write(file, Arrays.copyOf(block, Math.min(block.length, fileSize - written)),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            fileManager = new FileManager(dir.toString());
+            mapped = new MappedFileCache(ServerConfig.MMAP_CACHE_BYTES);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteTree(dir);
+        }
+    }
+
+    // mbi CACHE_MAX_ENTRY_BYTES cache-i s'e mban file-in, kështu që matet vetëm mungesa
+    @Benchmark
+    public long downloadPrepareContentCache(Download download) throws IOException {
+        ContentCache.Entry entry = download.fileManager.getContentCache().get(download.fileManager.resolveFile(download.name));
+        return entry == null ? -1 : entry.size();
+    }
+
+    @Benchmark
+    public long downloadPrepareMmap(Download download) throws IOException {
+        return download.mapped.get(download.fileManager.resolveFile(download.name)).size();
+    }
+
+    @Benchmark
+    public long downloadPrepareChannel(Download download) throws IOException {
+        ChunkSource source = ChunkSource.of(FileChannel.open(download.fileManager.resolveFile(download.name), StandardOpenOption.READ));
+        long size = source.size();
+        source.close();
+        return size;
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedTraffic {
+        TrafficMonitor monitor = new TrafficMonitor();
+        ClientHandler client = new ClientHandler(InetAddress.getLoopbackAddress(), 40000);
+    }
+
+    @State(Scope.Thread)
+    public static class OwnClient {
+        private static final AtomicInteger NEXT_PORT = new AtomicInteger();
+        ClientHandler client = new ClientHandler(InetAddress.getLoopbackAddress(), 40001 + NEXT_PORT.getAndIncrement() % 20000);
+    }
+
+    @Benchmark
+    public void trafficRecordShared(SharedTraffic traffic) {
+        traffic.monitor.recordMessageReceived(128, traffic.client);
+    }
+
+    @Benchmark
+    public void trafficRecordPerThread(SharedTraffic traffic, OwnClient own) {
+        traffic.monitor.recordMessageReceived(128, own.client);
+    }
+
+    @State(Scope.Benchmark)
+    public static class FileSize {
+        @Param({"512", "500000", "500000000"})
+        long bytes;
+    }
+
+    @Benchmark
+    public String formatFileSize(FileSize size) {
+        return Utils.formatFileSize(size.bytes);
+    }
+
+    // serveri niset brenda fork-ut, mbi një direktori të përkohshme
+    @State(Scope.Benchmark)
+    public static class Server {
+        Path dir;
+        DatagramSocket socket;
+        InetSocketAddress target;
+        DatagramPacket in = new DatagramPacket(new byte[65507], 65507);
+        byte[] text = "/search nuk-ekziston-askund".getBytes(StandardCharsets.UTF_8);
+        byte[] binary = new byte[128];
+        int binaryLength;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("bench-roundtrip");
+            // duhet të vendosen para se të ngarkohet ServerConfig
+            System.setProperty("udp.baseDir", dir.toString());
+            System.setProperty("udp.adminPort", "0");
+            Thread server = new Thread(() -> ServerMain.main(new String[0]), "bench-server");
+            server.setDaemon(true);
+            server.start();
+
+            socket = new DatagramSocket();
+            socket.setSoTimeout(2000);
+            target = new InetSocketAddress(InetAddress.getLoopbackAddress(), ServerConfig.PORT);
+            binaryLength = CommandFrame.encodeRequest(binary, Command.SEARCH, 1, new String[]{"nuk-ekziston-askund"});
+            waitForServer();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            socket.close();
+            deleteTree(dir);
+        }
+
+        private void waitForServer() throws IOException {
+            byte[] ping = "PING".getBytes(StandardCharsets.UTF_8);
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    socket.send(new DatagramPacket(ping, ping.length, target));
+                    socket.receive(in);
+                    return;
+                } catch (IOException e) {
+                    if (attempt >= 10) throw e;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int roundTripText(Server server) throws IOException {
+        server.socket.send(new DatagramPacket(server.text, server.text.length, server.target));
+        server.socket.receive(server.in);
+        return server.in.getLength();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int roundTripBinary(Server server) throws IOException {
+        server.socket.send(new DatagramPacket(server.binary, server.binaryLength, server.target));
+        server.socket.receive(server.in);
+        return server.in.getLength();
+    }
+
+    static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
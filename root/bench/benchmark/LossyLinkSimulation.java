@@ -0,0 +1,242 @@
+package benchmark;
+
+import client.AsyncClient;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Shkarkim nëpër një lidhje të simuluar në loopback: një proxy UDP mes klientit dhe serverit hedh paketa
+ * rastësisht dhe, në drejtimin server → klient, kalon nëpër një "router" me shpejtësi të kufizuar dhe radhë
+ * të fundme (paketat tepër hidhen), pastaj nëpër një vonesë sa RTT-ja e dhënë. Humbjet vijnë nga gjeneratorë
+ * me farë fikse, një për drejtim, kështu çdo ekzekutim hedh të njëjtat paketa. Serveri niset si proces më vete
+ * për secilin konfigurim, p.sh. "udp.congestion=off", "udp.congestion=aimd", "udp.fec=auto" ose "udp.fec=8".
+ *
+ * Përdorimi: java -cp root/bench/target/benchmarks.jar benchmark.LossyLinkSimulation [MB e file-it] [MB/s e lidhjes] [radha] [RTT ms] [konfigurime...]
+ */
+public class LossyLinkSimulation {
+    private static final int SERVER_PORT = 5002;
+    private static final double[] LOSS = {0, 0.01, 0.05, 0.10};
+
+    public static void main(String[] args) throws Exception {
+        long fileBytes = (long) ((args.length > 0 ? Double.parseDouble(args[0]) : 8) * 1024 * 1024);
+        double linkMBps = args.length > 1 ? Double.parseDouble(args[1]) : 16;
+        int queue = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int rttMs = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        String[] configs = args.length > 4 ? Arrays.copyOfRange(args, 4, args.length)
+                : new String[]{"udp.congestion=off", "udp.congestion=aimd", "udp.fec=auto"};
+
+        System.out.printf("Lidhja: %.1f MB/s, radha %d paketa, RTT %d ms%n", linkMBps, queue, rttMs);
+        System.out.printf("%-24s %6s %10s %10s %12s %12s%n", "konfigurimi", "humbje", "MB/s", "koha s",
+                "dërguar/file", "hedhur radhë");
+        for (String config : configs) {
+            ServerProcess server = ServerProcess.start("me " + config, fileBytes, config, "udp.adminPort=0");
+            try {
+                for (double loss : LOSS) {
+                    try (LossyProxy proxy = new LossyProxy(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                            SERVER_PORT), loss, linkMBps * 1024 * 1024, queue, rttMs)) {
+                        Run run = download(proxy.port(), ServerProcess.FIXTURE);
+                        if (run == null) {
+                            System.out.printf("%-24s %5.0f%% %10s%n", config, loss * 100, "skadoi");
+                            continue;
+                        }
+                        System.out.printf("%-24s %5.0f%% %10.2f %10.2f %12.2f %12d%n", config, loss * 100,
+                                run.bytes / run.seconds / (1024.0 * 1024.0), run.seconds,
+                                (double) proxy.forwardedBytes.get() / run.bytes, proxy.queueDrops.get());
+                    }
+                }
+            } finally {
+                server.close();
+            }
+        }
+    }
+
+    private static Run download(int port, String file) throws Exception {
+        Path directory = Files.createTempDirectory("lossy-link");
+        try (AsyncClient client = new AsyncClient(InetAddress.getLoopbackAddress(), port, 4, 1)) {
+            long start = System.nanoTime();
+            Path path;
+            try {
+                path = client.download(file, directory).get(120, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return new Run(Files.size(path), seconds);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path leftover : files.toList()) Files.delete(leftover);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private record Run(long bytes, double seconds) {}
+
+    // një klient i vetëm: adresa e tij mbahet nga paketa e parë
+    private static class LossyProxy implements AutoCloseable {
+        private final DatagramSocket front = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        private final DatagramSocket back = new DatagramSocket();
+        private final SocketAddress server;
+        private final double loss;
+        private final double bytesPerNano;
+        private final int queueLimit;
+        private final long delayNanos;
+        private final Random upLoss = new Random(7);
+        private final Random downLoss = new Random(11);
+        private final ArrayDeque<DatagramPacket> queue = new ArrayDeque<>();
+        private final ArrayDeque<InFlight> line = new ArrayDeque<>();
+        private final AtomicLong forwardedBytes = new AtomicLong();
+        private final AtomicLong queueDrops = new AtomicLong();
+        private volatile SocketAddress client;
+        private volatile boolean closed;
+        private long linkFreeAt;
+
+        LossyProxy(SocketAddress server, double loss, double bytesPerSecond, int queueLimit, int rttMs)
+                throws Exception {
+            this.server = server;
+            this.loss = loss;
+            this.bytesPerNano = bytesPerSecond / 1e9;
+            this.queueLimit = queueLimit;
+            this.delayNanos = rttMs * 1_000_000L;
+            start("proxy-up", this::upstream);
+            start("proxy-down", this::downstream);
+            start("proxy-link", this::link);
+            if (delayNanos > 0) start("proxy-delay", this::propagate);
+        }
+
+        int port() {
+            return front.getLocalPort();
+        }
+
+        private void start(String name, Runnable loop) {
+            Thread t = new Thread(loop, name);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        private static boolean lost(Random random, double loss) {
+            return random.nextDouble() < loss;
+        }
+
+        private void upstream() {
+            DatagramPacket in = new DatagramPacket(new byte[65507], 65507);
+            while (!closed) {
+                try {
+                    in.setLength(65507);
+                    front.receive(in);
+                    client = in.getSocketAddress();
+                    if (lost(upLoss, loss)) continue;
+                    back.send(new DatagramPacket(in.getData(), in.getLength(), server));
+                } catch (Exception e) {
+                    return;
+                }
+            }
+        }
+
+        // paketat nga serveri futen në radhën e router-it; kur radha është plot hidhen
+        private void downstream() {
+            while (!closed) {
+                DatagramPacket in = new DatagramPacket(new byte[65507], 65507);
+                try {
+                    back.receive(in);
+                } catch (Exception e) {
+                    return;
+                }
+                forwardedBytes.addAndGet(in.getLength());
+                if (lost(downLoss, loss)) continue;
+                synchronized (queue) {
+                    if (queue.size() >= queueLimit) {
+                        queueDrops.incrementAndGet();
+                        continue;
+                    }
+                    queue.add(in);
+                    queue.notify();
+                }
+            }
+        }
+
+        // lidhja nxjerr një paketë sapo të ketë "transmetuar" të mëparshmen me shpejtësinë e dhënë
+        private void link() {
+            while (!closed) {
+                DatagramPacket packet;
+                synchronized (queue) {
+                    while (queue.isEmpty() && !closed) {
+                        try {
+                            queue.wait(10);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    packet = queue.poll();
+                }
+                if (packet == null) continue;
+
+                long now = System.nanoTime();
+                linkFreeAt = Math.max(linkFreeAt, now) + (long) (packet.getLength() / bytesPerNano);
+                long wait = linkFreeAt - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                if (delayNanos > 0) {
+                    synchronized (line) {
+                        line.add(new InFlight(packet, System.nanoTime() + delayNanos));
+                        line.notify();
+                    }
+                } else if (!deliver(packet)) {
+                    return;
+                }
+            }
+        }
+
+        // e gjithë vonesa e RTT-së vendoset në drejtimin server → klient, pas router-it
+        private void propagate() {
+            while (!closed) {
+                InFlight next;
+                synchronized (line) {
+                    while (line.isEmpty() && !closed) {
+                        try {
+                            line.wait(10);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    next = line.poll();
+                }
+                if (next == null) continue;
+                long wait = next.due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                if (!deliver(next.packet)) return;
+            }
+        }
+
+        private boolean deliver(DatagramPacket packet) {
+            try {
+                front.send(new DatagramPacket(packet.getData(), packet.getLength(), client));
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            front.close();
+            back.close();
+        }
+
+        private record InFlight(DatagramPacket packet, long due) {}
+    }
+}
@@ -0,0 +1,108 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Serveri si proces më vete për testet e ngarkesës: niset me JVM-në dhe classpath-in e testit dhe me vetitë
+ * udp.* të dhëna, dhe konsiderohet gati kur shkruan "gati". Çdo rresht i daljes i kalohet dëgjuesit, nëse ka.
+ * Serveri punon në një direktori të përkohshme (udp.baseDir) që fshihet në close(), me file-in FIXTURE me
+ * bajte rastësore me farë fikse kur kërkohet, kështu testet nuk prekin root/src/server_files.
+ */
+public class ServerProcess implements AutoCloseable {
+    public static final String FIXTURE = "fixture.bin";
+
+    private final Process process;
+    private final Path baseDir;
+
+    private ServerProcess(Process process, Path baseDir) {
+        this.process = process;
+        this.baseDir = baseDir;
+    }
+
+    // vetitë jepen pa -D, p.sh. "udp.core=nio"; përshkrimi del në gabim nëse serveri nuk niset
+    public static ServerProcess start(String description, String... properties) throws Exception {
+        return start(description, 0, line -> {}, properties);
+    }
+
+    public static ServerProcess start(String description, long fixtureBytes, String... properties) throws Exception {
+        return start(description, fixtureBytes, line -> {}, properties);
+    }
+
+    public static ServerProcess start(String description, long fixtureBytes, Consumer<String> output,
+                                      String... properties) throws Exception {
+        Path baseDir = Files.createTempDirectory("server-files");
+        if (fixtureBytes > 0) writeFixture(baseDir.resolve(FIXTURE), fixtureBytes);
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Dudp.baseDir=" + baseDir);
+        for (String property : properties) command.add("-D" + property);
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "server.ServerMain"));
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+
+        CountDownLatch ready = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.contains("gati")) ready.countDown();
+                    output.accept(line);
+                }
+            } catch (Exception ignored) {
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+
+        ServerProcess server = new ServerProcess(process, baseDir);
+        if (!ready.await(10, TimeUnit.SECONDS)) {
+            server.close();
+            throw new IllegalStateException("Serveri nuk u nis " + description);
+        }
+        return server;
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            process.waitFor(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try (Stream<Path> files = Files.walk(baseDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Direktoria " + baseDir + " nuk u fshi: " + e.getMessage());
+        }
+    }
+
+    // bajte rastësore që kompresimi të mos e zvogëlojë transferimin
+    private static void writeFixture(Path file, long size) throws IOException {
+        Random random = new Random(42);
+        byte[] block = new byte[1 << 20];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.ClientHandler;
+import server.SessionTable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tabela e sesioneve: memoria për sesion dhe kostoja e kërkimit për çdo paketë, për tabelën me adresim
+ * të hapur dhe çelës primitiv krahasuar me ConcurrentHashMap me çelës String "ip:port".
+ * Memoria matet gjatë setup-it si ndryshim i heap-it pas GC dhe përfshin edhe ClientHandler-at vetë;
+ * alokimi për kërkim lexohet nga gc.alloc.rate.norm.
+ *
+ * Përdorimi: java -jar root/bench/target/benchmarks.jar SessionTableBenchmark [-p sessions=100000] -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 300, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 300, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionTableBenchmark {
+    @Param({"1000", "100000"})
+    int sessions;
+
+    private InetSocketAddress[] sources;
+    private ConcurrentHashMap<String, ClientHandler> legacy;
+    private SessionTable table;
+    private int mask;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws UnknownHostException {
+        sources = sources(sessions);
+        mask = Integer.highestOneBit(sessions) - 1;
+
+        long before = usedHeap();
+        legacy = new ConcurrentHashMap<>();
+        for (InetSocketAddress source : sources) {
+            legacy.put(key(source), new ClientHandler(source.getAddress(), source.getPort()));
+        }
+        long legacyBytes = usedHeap() - before;
+
+        before = usedHeap();
+        table = new SessionTable();
+        for (InetSocketAddress source : sources) table.getOrCreate(source, Integer.MAX_VALUE, null);
+        long tableBytes = usedHeap() - before;
+
+        if (legacy.size() != table.size()) throw new IllegalStateException("madhësi të ndryshme");
+        System.out.printf("%n%,d sesione: ConcurrentHashMap<String> %d B/sesion, SessionTable %d B/sesion%n",
+                sessions, legacyBytes / sessions, tableBytes / sessions);
+    }
+
+    @Benchmark
+    public int lookupStringKey() {
+        InetSocketAddress source = sources[cursor++ & mask];
+        return legacy.get(key(source)).getPort();
+    }
+
+    @Benchmark
+    public int lookupTable() {
+        InetSocketAddress source = sources[cursor++ & mask];
+        return table.get(source).getPort();
+    }
+
+    private static String key(InetSocketAddress source) {
+        return source.getAddress().getHostAddress() + ":" + source.getPort();
+    }
+
+    // adresa IPv4 të rastësishme, me një pjesë IPv6 që të matet edhe forma e gjatë e çelësit
+    private static InetSocketAddress[] sources(int size) throws UnknownHostException {
+        Random random = new Random(42);
+        InetSocketAddress[] sources = new InetSocketAddress[size];
+        for (int i = 0; i < size; i++) {
+            byte[] address = new byte[i % 8 == 0 ? 16 : 4];
+            random.nextBytes(address);
+            sources[i] = new InetSocketAddress(InetAddress.getByAddress(address), 1024 + random.nextInt(60000));
+        }
+        return sources;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,111 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import server.ClientHandler;
+import server.TrafficMonitor;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shkallëzimi i numërimit të trafikut nga 1 deri në 32 thread-e: implementimi i vjetër me AtomicLong
+ * dhe ConcurrentHashMap.compute krahasuar me LongAdder dhe numëruesit te ClientHandler.
+ * Skenari "Shared" i bën të gjithë thread-et të shkruajnë te i njëjti klient, "PerThread" secili te i veti.
+ *
+ * Përdorimi: java -cp root/bench/target/benchmarks.jar benchmark.TrafficMonitorScalingBenchmark
+ * (të gjitha numrat e thread-eve), ose java -jar root/bench/target/benchmarks.jar TrafficMonitorScaling -t 8
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 300, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 300, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class TrafficMonitorScalingBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.println("Procesorë të disponueshëm: " + Runtime.getRuntime().availableProcessors());
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                    .include(TrafficMonitorScalingBenchmark.class.getName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        LegacyTrafficMonitor legacy = new LegacyTrafficMonitor();
+        TrafficMonitor adder = new TrafficMonitor();
+        ClientHandler client = new ClientHandler(InetAddress.getLoopbackAddress(), 40000);
+    }
+
+    @State(Scope.Thread)
+    public static class Own {
+        private static final AtomicInteger NEXT_PORT = new AtomicInteger();
+        int port = 40001 + NEXT_PORT.getAndIncrement() % 20000;
+        String key = "127.0.0.1:" + port;
+        ClientHandler client = new ClientHandler(InetAddress.getLoopbackAddress(), port);
+    }
+
+    @Benchmark
+    public void legacyShared(Shared shared) {
+        shared.legacy.recordMessageReceived(128, "127.0.0.1:40000");
+    }
+
+    @Benchmark
+    public void legacyPerThread(Shared shared, Own own) {
+        shared.legacy.recordMessageReceived(128, own.key);
+    }
+
+    @Benchmark
+    public void adderShared(Shared shared) {
+        shared.adder.recordMessageReceived(128, shared.client);
+    }
+
+    @Benchmark
+    public void adderPerThread(Shared shared, Own own) {
+        shared.adder.recordMessageReceived(128, own.client);
+    }
+
+    // kopje e implementimit të mëparshëm, vetëm për krahasim
+    static class LegacyTrafficMonitor {
+        private final AtomicLong totalBytesReceived = new AtomicLong();
+        private final AtomicLong totalMessages = new AtomicLong();
+        private final ConcurrentHashMap<String, LegacyClientInfo> clientStats = new ConcurrentHashMap<>();
+
+        void recordMessageReceived(long bytes, String clientKey) {
+            totalBytesReceived.addAndGet(bytes);
+            totalMessages.incrementAndGet();
+            clientStats.compute(clientKey, (k, info) -> {
+                if (info == null) info = new LegacyClientInfo();
+                info.addReceived(bytes);
+                return info;
+            });
+        }
+    }
+
+    private static class LegacyClientInfo {
+        private long bytesReceived;
+        private int messages;
+
+        synchronized void addReceived(long bytes) {
+            bytesReceived += bytes;
+            messages++;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package client;
+
+import common.Command;
+import common.CommandFrame;
+import common.Parity;
+import common.ReceiveWindow;
+import common.TransferFrame;
+import common.Utils;
+import server.ServerConfig;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+// klient me shumë kërkesa njëkohësisht mbi një socket: çdo kërkesë dërgohet si frame binar me id,
+// një thread i vetëm merr përgjigjet dhe i lidh me CompletableFuture-n përkatëse, kurse një timer
+// i ridërgon kërkesat pa përgjigje pas RTO-së së llogaritur nga RTT-ja e matur.
+// Përgjigjet në faqe (PAGE:) nuk kanë id kërkese, ato mbeten për CommandProcessor.
+// Commit-i i upload-it dhe fshirja nuk janë idempotente: dërgohen një herë dhe presin më gjatë.
+public final class AsyncClient implements AutoCloseable {
+    private static final int BUFFER_SIZE = 65507;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long ONCE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int TICK_MS = 10;
+
+    private final DatagramSocket socket;
+    private final InetAddress serverAddress;
+    private final int serverPort;
+    private final Semaphore inFlight;
+    private final Semaphore downloadSlots;
+    private final RttEstimator rtt = new RttEstimator(1000, 20, 10000);
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Download> downloads = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final Thread receiver;
+    private final CompletableFuture<String> codecs;
+    private volatile boolean closed;
+    private DatagramChannel multicast;
+    private InetSocketAddress multicastGroup;
+
+    public AsyncClient(InetAddress serverAddress, int serverPort) throws SocketException {
+        this(serverAddress, serverPort, ServerConfig.CLIENT_IN_FLIGHT, ServerConfig.CLIENT_DOWNLOADS);
+    }
+
+    public AsyncClient(InetAddress serverAddress, int serverPort, int maxInFlight, int maxDownloads)
+            throws SocketException {
+        this.socket = new DatagramSocket();
+        socket.setReceiveBufferSize(ServerConfig.SOCKET_BUFFER_SIZE);
+        this.serverAddress = serverAddress;
+        this.serverPort = serverPort;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.downloadSlots = new Semaphore(maxDownloads);
+
+        this.receiver = new Thread(this::receiveLoop, "async-client-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "async-client-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::checkTimeouts, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+
+        // transferimet presin negocimin që serveri të dijë nëse mund t'i kompresojë
+        this.codecs = "off".equalsIgnoreCase(ServerConfig.COMPRESSION)
+                ? CompletableFuture.completedFuture("CODEC:none")
+                : request("/codecs " + ServerConfig.COMPRESSION);
+    }
+
+    // bllokon thirrësin kur janë arritur maxInFlight kërkesa pa përgjigje
+    public CompletableFuture<String> request(String message) {
+        Command command = Command.fromText(message);
+        if (command == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Komandë e panjohur: " + message));
+        }
+        String args = Command.argumentsOf(message);
+        String[] fields = args.isEmpty() ? new String[0] : args.split("\\s+");
+
+        int requestId = nextRequestId.incrementAndGet();
+        byte[] frame = new byte[BUFFER_SIZE];
+        int length;
+        try {
+            length = CommandFrame.encodeRequest(frame, command, requestId, fields);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        boolean once = command == Command.UPLOAD_COMMIT || command == Command.DELETE;
+        PendingRequest request = new PendingRequest(Arrays.copyOf(frame, length), once);
+        request.future.whenComplete((response, error) -> {
+            pending.remove(requestId, request);
+            inFlight.release();
+        });
+        pending.put(requestId, request);
+        if (closed) {
+            request.future.completeExceptionally(new SocketException("Klienti është mbyllur"));
+            return request.future;
+        }
+        transmit(request, System.nanoTime());
+        return request.future;
+    }
+
+    // shkarkimi mban një vend nga maxDownloads deri sa të mbarojë, që dritaret të mos e mbysin socket-in
+    public CompletableFuture<Path> download(String filename, Path directory) {
+        return download(filename, directory, 0);
+    }
+
+    // rateBytesPerSecond > 0 i kërkon serverit ta kufizojë dërgimin e këtij file-i
+    public CompletableFuture<Path> download(String filename, Path directory, long rateBytesPerSecond) {
+        return transfer("/download " + filename + (rateBytesPerSecond > 0 ? " " + rateBytesPerSecond : ""),
+                name -> directory.resolve(name));
+    }
+
+    // si download, por serveri e bashkon me shkarkimet e tjera të këtij file-i në një stream multicast;
+    // chunks që humbasin riparohen me të njëjtat ACK si në unicast
+    public CompletableFuture<Path> fanout(String filename, Path directory) {
+        return transfer("/fanout " + filename, name -> directory.resolve(name));
+    }
+
+    // çdo komandë që përgjigjet me TRANSFER:, p.sh. /delta_sig; të dhënat shkruhen te target
+    public CompletableFuture<Path> fetch(String command, Path target) {
+        return transfer(command, name -> target);
+    }
+
+    private CompletableFuture<Path> transfer(String command, UnaryOperator<Path> targetFor) {
+        try {
+            downloadSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // si acquire() më sipër, pritet në thread-in e thirrësit: vazhdimi në receiver mund të bllokohej te inFlight
+        codecs.handle((codec, error) -> codec).join();
+        CompletableFuture<Path> result = request(command).thenCompose(response -> {
+            try {
+                String header = response;
+                if (header.startsWith("MULTICAST:")) {
+                    String[] parts = header.split(":", 4);
+                    joinGroup(new InetSocketAddress(InetAddress.getByName(parts[1]), Integer.parseInt(parts[2])));
+                    header = parts[3];
+                }
+                if (!header.startsWith("TRANSFER:")) {
+                    return CompletableFuture.failedFuture(new IOException(response));
+                }
+                return startDownload(header, targetFor);
+            } catch (IOException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        result.whenComplete((path, error) -> downloadSlots.release());
+        return result;
+    }
+
+    public long smoothedRttMicros() {
+        return rtt.srttNanos() / 1000;
+    }
+
+    private CompletableFuture<Path> startDownload(String header, UnaryOperator<Path> targetFor) throws IOException {
+        String[] parts = header.split(":", 8);
+        if (parts.length < 8) throw new IOException("Përgjigje e pavlefshme për download");
+
+        int transferId = Integer.parseInt(parts[1]);
+        long size = Long.parseLong(parts[2]);
+        int chunkSize = Integer.parseInt(parts[3]);
+        int chunkCount = Integer.parseInt(parts[4]);
+        int window = Integer.parseInt(parts[5]);
+        String digest = Utils.isSha256(parts[6]) ? parts[6] : null;
+        Path target = targetFor.apply(Paths.get(parts[7]).getFileName());
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Download download = new Download(transferId, size, chunkSize, chunkCount, window,
+                target, target.resolveSibling(target.getFileName() + ".part"));
+        if (chunkCount == 0) {
+            download.finish();
+        } else {
+            downloads.put(transferId, download);
+            download.future.whenComplete((path, error) -> downloads.remove(transferId, download));
+            download.sendAck();
+        }
+        if (digest == null) return download.future;
+        // hash-i llogaritet jashtë thread-it të marrjes që të mos vonojë chunks e transferimeve të tjera
+        return download.future.thenApplyAsync(path -> verify(path, digest));
+    }
+
+    private static Path verify(Path path, String digest) {
+        try {
+            String actual = Utils.sha256(path);
+            if (actual.equalsIgnoreCase(digest)) return path;
+            Files.deleteIfExists(path);
+            throw new CompletionException(new IOException("SHA-256 e " + path.getFileName()
+                    + " nuk përputhet me atë të serverit, file u fshi"));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // grupi hapet një herë për klientin; frame-t DATA prej tij shkojnë te shkarkimet si ato me unicast
+    private synchronized void joinGroup(InetSocketAddress group) throws IOException {
+        if (multicast != null) {
+            if (!group.equals(multicastGroup)) throw new IOException("Klienti është tashmë në grupin " + multicastGroup);
+            return;
+        }
+        DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, ServerConfig.SOCKET_BUFFER_SIZE);
+            channel.bind(new InetSocketAddress(group.getPort()));
+            channel.join(group.getAddress(), groupInterface());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        multicast = channel;
+        multicastGroup = group;
+        Thread t = new Thread(() -> multicastLoop(channel), "async-client-multicast");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // pa udp.fanoutInterface merret ndërfaqja nga e cila kalon rruga drejt serverit
+    private NetworkInterface groupInterface() throws IOException {
+        NetworkInterface nif;
+        if (!ServerConfig.FANOUT_INTERFACE.isEmpty()) {
+            nif = NetworkInterface.getByName(ServerConfig.FANOUT_INTERFACE);
+        } else {
+            try (DatagramSocket probe = new DatagramSocket()) {
+                probe.connect(serverAddress, serverPort);
+                nif = NetworkInterface.getByInetAddress(probe.getLocalAddress());
+            }
+        }
+        if (nif == null) throw new IOException("Nuk u gjet ndërfaqja për multicast, vendosni udp.fanoutInterface");
+        return nif;
+    }
+
+    private void multicastLoop(DatagramChannel channel) {
+        ByteBuffer packet = ByteBuffer.allocate(BUFFER_SIZE);
+        while (!closed) {
+            try {
+                channel.receive(packet.clear());
+            } catch (IOException e) {
+                return;
+            }
+            packet.flip();
+            if (!TransferFrame.isFrame(packet) || TransferFrame.type(packet) != TransferFrame.DATA) continue;
+            Download download = downloads.get(TransferFrame.transferId(packet));
+            if (download != null) download.onData(packet);
+        }
+    }
+
+    private void transmit(PendingRequest request, long now) {
+        request.attempts++;
+        request.sentAt = now;
+        request.deadline = now + (request.once ? ONCE_TIMEOUT_NANOS : rtt.rtoNanos(request.attempts - 1));
+        try {
+            socket.send(new DatagramPacket(request.frame, request.frame.length, serverAddress, serverPort));
+        } catch (IOException e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    private void receiveLoop() {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        DatagramPacket in = new DatagramPacket(buffer, buffer.length);
+        ByteBuffer packet = ByteBuffer.wrap(buffer);
+        while (!closed) {
+            try {
+                in.setLength(buffer.length);
+                socket.receive(in);
+            } catch (IOException e) {
+                if (!closed) failAll(e);
+                return;
+            }
+            packet.clear().limit(in.getLength());
+
+            if (TransferFrame.isFrame(packet)) {
+                Download download = downloads.get(TransferFrame.transferId(packet));
+                if (download == null) continue;
+                byte type = TransferFrame.type(packet);
+                if (type == TransferFrame.DATA) {
+                    download.onData(packet);
+                } else if (type == TransferFrame.PARITY) {
+                    download.onParity(packet);
+                }
+                continue;
+            }
+            // datagramet tekst (p.sh. "Serveri është plot") nuk i përkasin asnjë kërkese të caktuar
+            if (!CommandFrame.isCommand(packet) || (CommandFrame.flags(packet) & CommandFrame.FLAG_RESPONSE) == 0) {
+                continue;
+            }
+
+            PendingRequest request = pending.get(CommandFrame.requestId(packet));
+            if (request == null) continue;
+            if (request.attempts == 1) rtt.sample(System.nanoTime() - request.sentAt);
+            request.future.complete(StandardCharsets.UTF_8.decode(CommandFrame.payload(packet)).toString());
+        }
+    }
+
+    private void checkTimeouts() {
+        long now = System.nanoTime();
+        for (PendingRequest request : pending.values()) {
+            if (request.future.isDone() || now < request.deadline) continue;
+            int maxAttempts = request.once ? 1 : MAX_ATTEMPTS;
+            if (request.attempts >= maxAttempts) {
+                request.future.completeExceptionally(new SocketTimeoutException(
+                        "Serveri nuk u përgjigj pas " + maxAttempts + " përpjekjeve"));
+            } else {
+                transmit(request, now);
+            }
+        }
+        long millis = System.currentTimeMillis();
+        for (Download download : downloads.values()) download.checkIdle(millis);
+    }
+
+    private void failAll(Throwable error) {
+        for (PendingRequest request : pending.values()) request.future.completeExceptionally(error);
+        for (Download download : downloads.values()) download.fail(error);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+        socket.close();
+        synchronized (this) {
+            if (multicast != null) {
+                try {
+                    multicast.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        failAll(new SocketException("Klienti është mbyllur"));
+    }
+
+    private static class PendingRequest {
+        private final byte[] frame;
+        private final boolean once;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private volatile int attempts;
+        private volatile long sentAt;
+        private volatile long deadline;
+
+        PendingRequest(byte[] frame, boolean once) {
+            this.frame = frame;
+            this.once = once;
+        }
+    }
+
+    // thirret nga thread-i marrës (onData) dhe nga timer-i (checkIdle), prandaj metodat janë synchronized
+    private class Download {
+        private final int transferId;
+        private final long size;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final Path target;
+        private final Path partial;
+        private final ReceiveWindow received;
+        private final byte[] ackFrame;
+        private final int ackEvery;
+        private final FileChannel channel;
+        private final ByteBuffer inflated;
+        private final Parity.Decoder parity;
+        private final CompletableFuture<Path> future = new CompletableFuture<>();
+        private int sinceAck;
+        private boolean gapReported;
+        private long lastData = System.currentTimeMillis();
+        private long lastAck = lastData;
+
+        Download(int transferId, long size, int chunkSize, int chunkCount, int window, Path target, Path partial)
+                throws IOException {
+            this.transferId = transferId;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = chunkCount;
+            this.target = target;
+            this.partial = partial;
+            this.received = new ReceiveWindow(chunkCount, window);
+            this.ackFrame = new byte[ReceiveWindow.ackFrameSize(window)];
+            this.ackEvery = ReceiveWindow.ackEvery(window);
+            this.inflated = ByteBuffer.allocate(chunkSize);
+            // READ që pariteti të rindërtojë një chunk nga të tjerët e grupit të shkruar tashmë
+            this.channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.parity = new Parity.Decoder(channel, size, chunkSize, chunkCount);
+        }
+
+        synchronized void onData(ByteBuffer frame) {
+            if (future.isDone()) return;
+            int seq = TransferFrame.sequence(frame);
+            if (seq < 0 || seq >= chunkCount || received.isReceived(seq)) return;
+            lastData = System.currentTimeMillis();
+            // chunk-u i dëmtuar hidhet, SACK-u i radhës e kërkon përsëri
+            if (!TransferFrame.checksumMatches(frame)) return;
+
+            try {
+                long position = (long) seq * chunkSize;
+                ByteBuffer chunk = TransferFrame.chunkData(frame, inflated, (int) Math.min(chunkSize, size - position));
+                if (chunk == null) {
+                    // gjatësi e gabuar: ACK-u i menjëhershëm e tregon chunk-un si mungesë
+                    sendAck();
+                    return;
+                }
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+                received.markReceived(seq);
+                parity.onData(seq, received);
+                acknowledge(seq);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        synchronized void onParity(ByteBuffer frame) {
+            if (future.isDone()) return;
+            lastData = System.currentTimeMillis();
+            if (!TransferFrame.checksumMatches(frame)) return;
+            try {
+                int seq = parity.onParity(frame, received);
+                if (seq >= 0) acknowledge(seq);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void acknowledge(int seq) throws IOException {
+            sinceAck++;
+            boolean gap = seq > received.cumulative() && !gapReported;
+            if (sinceAck >= ackEvery || gap || received.isComplete()) {
+                sendAck();
+                gapReported = gap;
+            }
+            if (received.isComplete()) {
+                sendAck();
+                finish();
+            }
+        }
+
+        synchronized void checkIdle(long now) {
+            if (future.isDone()) return;
+            if (now - lastData > ServerConfig.TRANSFER_IDLE_MS) {
+                fail(new SocketTimeoutException("Transferimi " + transferId + " u ndërpre, serveri nuk dërgon më të dhëna"));
+            } else if (now - lastData > ServerConfig.RETRANSMIT_MS && now - lastAck > ServerConfig.RETRANSMIT_MS) {
+                try {
+                    sendAck();
+                    gapReported = false;
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        synchronized void sendAck() throws IOException {
+            int length = received.writeAck(ackFrame, transferId);
+            socket.send(new DatagramPacket(ackFrame, length, serverAddress, serverPort));
+            sinceAck = 0;
+            lastAck = System.currentTimeMillis();
+        }
+
+        synchronized void finish() throws IOException {
+            channel.close();
+            if (Files.size(partial) != size) {
+                fail(new IOException("Madhësia e file-it " + target.getFileName() + " nuk përputhet"));
+                return;
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+            future.complete(target);
+        }
+
+        synchronized void fail(Throwable error) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            future.completeExceptionally(error);
+        }
+    }
+}
@@ -6,6 +6,7 @@
     import java.io.IOException;
     import java.net.*;
     import java.nio.charset.StandardCharsets;
+    import java.util.Map;
     import java.util.Scanner;
 
     public class ClientMain {
@@ -20,6 +21,7 @@
             try {
                 socket = new DatagramSocket();
                 socket.setSoTimeout(3000);
+                socket.setReceiveBufferSize(ServerConfig.SOCKET_BUFFER_SIZE);
 
                 serverAddress = InetAddress.getByName(SERVER_IP);
                 CommandProcessor processor = new CommandProcessor(socket, serverAddress, ServerConfig.PORT);
@@ -71,8 +73,24 @@
             try {
                 serverAddress = InetAddress.getByName(SERVER_IP);
 
+                // në cluster duhet të përgjigjen të gjithë shard-et
+                if (!ServerConfig.CLUSTER.isBlank()) {
+                    for (Map.Entry<String, InetSocketAddress> shard
+                            : CommandProcessor.parseCluster(ServerConfig.CLUSTER).entrySet()) {
+                        System.out.println("Duke u lidhur me shard-in " + shard.getKey() + "...");
+                        if (!pingServer(shard.getValue().getAddress(), shard.getValue().getPort())) {
+                            System.out.println("Shard-i " + shard.getKey() + " nuk u përgjigj. Lidhja dështoi.");
+                            connected = false;
+                            return;
+                        }
+                    }
+                    System.out.println("U lidhët me cluster-in me sukses!");
+                    connected = true;
+                    return;
+                }
+
                 System.out.println("Duke u lidhur me serverin " + SERVER_IP + ":" + ServerConfig.PORT + "...");
-                if (!pingServer()) {
+                if (!pingServer(serverAddress, ServerConfig.PORT)) {
                     System.out.println("Serveri nuk u përgjigj. Lidhja dështoi.");
                     connected = false;
                     return;
@@ -87,10 +105,10 @@
             }
         }
 
-        private static boolean pingServer() {
+        private static boolean pingServer(InetAddress address, int port) {
             try {
                 byte[] buffer = "PING".getBytes(StandardCharsets.UTF_8);
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length, serverAddress, ServerConfig.PORT);
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length, address, port);
                 socket.send(packet);
 
                 DatagramPacket response = new DatagramPacket(new byte[1024], 1024);
@@ -109,12 +127,17 @@
             System.out.println("  /quit                     - Dil nga aplikacioni");
             System.out.println("\nPasi të lidheni me serverin:");
             System.out.println("  /list                     - Listo file-t në server");
-            System.out.println("  /read <file>              - Lexo file nga serveri");
+            System.out.println("  /read <file> [off gjat]   - Lexo file (ose një pjesë të tij) nga serveri");
             System.out.println("  /download <file>          - Shkarko file nga serveri");
+            System.out.println("  /mget <pattern>           - Shkarko paralelisht file-t që gjen /search");
+            System.out.println("  /sync <file>              - Përditëso kopjen lokale duke marrë vetëm blloqet e ndryshuara");
+            System.out.println("  /fanout <file>            - Shkarko duke ndarë stream-in multicast me klientët e tjerë");
             System.out.println("  /search <keyword>         - Kërko file në server");
             System.out.println("  /delete <file>            - Fshijë file nga serveri");
+            System.out.println("  /upload_start <path>      - Ngarko file në server (admin)");
             System.out.println("  /info <file>              - Info për file nga serveri");
             System.out.println("  /login <password>         - Login si admin");
+            System.out.println("  /rebalance [host:port...] - Zhvendos file-t te shard-i pronar pas ndryshimit të cluster-it (admin)");
             System.out.println("  STATS                     - Statistikat e serverit");
             System.out.println();
         }
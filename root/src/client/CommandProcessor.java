@@ -1,21 +1,56 @@
 package client;
 
+import common.Command;
+import common.CommandFrame;
+import common.Compression;
+import common.HashRing;
+import common.Parity;
+import common.ReceiveWindow;
+import common.SendWindow;
+import common.TransferFrame;
+import common.Utils;
 import server.ServerConfig;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Base64;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class CommandProcessor {
     private final DatagramSocket socket;
-    private final InetAddress serverAddress;
-    private final int serverPort;
+    // serveri i komandës aktuale; në cluster ndërrohet te shard-i që zotëron file-in
+    private InetAddress serverAddress;
+    private int serverPort;
+    private final InetSocketAddress defaultServer;
+    // null kur nuk ka cluster
+    private final HashRing<String> ring;
+    private final Map<String, InetSocketAddress> shards;
     private static final int BUFFER_SIZE = 65507;
+    private static final int REQUEST_ATTEMPTS = 3;
+    // commit-i pret shkrimet e mbetura dhe force()-in e file-it, dhe nuk ridërgohet
+    private static final int COMMIT_TIMEOUT_MS = 30_000;
     private boolean isAdmin = false;
+    private int nextRequestId;
+    // null deri sa serveri t'i përgjigjet /codecs
+    private Compression.Codec codec;
+    // përgjigjja e fundit pa u dekoduar, sepse faqet e kompresuara nuk janë tekst
+    private byte[] lastResponse;
 
     private static final String ADMIN_PASSWORD = "admin123";
 
@@ -23,6 +58,51 @@ public class CommandProcessor {
         this.socket = socket;
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
+        this.defaultServer = new InetSocketAddress(serverAddress, serverPort);
+        this.shards = parseCluster(ServerConfig.CLUSTER);
+        if (shards.isEmpty()) {
+            this.ring = null;
+        } else {
+            this.ring = new HashRing<>(ServerConfig.CLUSTER_VNODES);
+            for (String shard : shards.keySet()) ring.add(shard);
+        }
+    }
+
+    // "host:port,host:port" → shard-et sipas emrit; emri (jo adresa e zgjidhur) vendos pikat në ring
+    static Map<String, InetSocketAddress> parseCluster(String cluster) {
+        Map<String, InetSocketAddress> shards = new LinkedHashMap<>();
+        for (String shard : cluster.split("[,\\s]+")) {
+            if (shard.isEmpty()) continue;
+            int colon = shard.lastIndexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Shard i pavlefshëm (pritet host:port): " + shard);
+            shards.put(shard, new InetSocketAddress(shard.substring(0, colon),
+                    Integer.parseInt(shard.substring(colon + 1))));
+        }
+        return shards;
+    }
+
+    private void useShard(InetSocketAddress shard) {
+        serverAddress = shard.getAddress();
+        serverPort = shard.getPort();
+    }
+
+    private InetSocketAddress ownerOf(String filename) {
+        return ring != null ? shards.get(ring.owner(filename)) : defaultServer;
+    }
+
+    private Collection<InetSocketAddress> allShards() {
+        return ring != null ? shards.values() : List.of(defaultServer);
+    }
+
+    // emri i file-it që vendos shard-in, null për komandat që nuk kanë një file të vetëm
+    private static String routingKey(String command) {
+        String[] parts = command.split("\\s+");
+        if (parts.length < 2) return null;
+        return switch (parts[0]) {
+            case "/read", "/download", "/info", "/delete", "/sync", "/fanout" -> parts[1];
+            case "/upload_start" -> Paths.get(command.substring(parts[0].length()).trim()).getFileName().toString();
+            default -> null;
+        };
     }
 
     private void ensureDownloadsDirExists() {
@@ -39,6 +119,8 @@ public class CommandProcessor {
 
     public void processCommand(String command) {
         try {
+            if (codec == null) negotiateCodec();
+            if (ring != null && dispatchCluster(command)) return;
             if (command.equalsIgnoreCase("STATS") ||
                     command.startsWith("/list") ||
                     command.startsWith("/read ") ||
@@ -47,9 +129,25 @@ public class CommandProcessor {
                     command.startsWith("/download ")) {
                 sendAndReceive(command);
 
+            } else if (command.startsWith("/mget ")) {
+                handleMultiGet(command.substring(6).trim());
+
+            } else if (command.startsWith("/sync ")) {
+                handleSync(command.substring(6).trim());
+
+            } else if (command.startsWith("/fanout ")) {
+                handleFanout(command.substring(8).trim());
+
             } else if (command.startsWith("/login ")) {
                 handleLogin(command);
 
+            } else if (command.startsWith("/rebalance")) {
+                if (!isAdmin) {
+                    System.out.println("Vetëm admin mund të rebalancojë cluster-in.");
+                    return;
+                }
+                handleRebalance(command.substring(10).trim());
+
             } else if (command.startsWith("/upload_start ")) {
                 if (!isAdmin) {
                     System.out.println("Vetëm admin mund të bëjë upload.");
@@ -73,6 +171,53 @@ public class CommandProcessor {
         }
     }
 
+    // serveri kompreson vetëm pasi klienti ta ketë kërkuar; një server i vjetër e refuzon komandën
+    private void negotiateCodec() throws IOException {
+        if ("off".equalsIgnoreCase(ServerConfig.COMPRESSION)) {
+            codec = Compression.Codec.NONE;
+            return;
+        }
+        // çdo shard mban kodekun e klientit më vete
+        Compression.Codec negotiated = null;
+        for (InetSocketAddress shard : allShards()) {
+            useShard(shard);
+            String response = request("/codecs " + ServerConfig.COMPRESSION);
+            if (response == null) return;
+            if (negotiated == null) {
+                negotiated = response.startsWith("CODEC:") ? Compression.Codec.negotiate(response.substring(6))
+                        : Compression.Codec.NONE;
+            }
+        }
+        codec = negotiated;
+    }
+
+    // në cluster: STATS dhe /list, /search pyesin të gjithë shard-et, komandat për një file shkojnë te pronari;
+    // false kur komanda vazhdon në rrugën e zakonshme
+    private boolean dispatchCluster(String command) throws IOException {
+        if (command.equalsIgnoreCase("STATS")) {
+            for (Map.Entry<String, InetSocketAddress> shard : shards.entrySet()) {
+                System.out.println("\n=== Shard " + shard.getKey() + " ===");
+                useShard(shard.getValue());
+                sendAndReceive(command);
+            }
+            return true;
+        }
+        if (command.startsWith("/list") || command.startsWith("/search ")) {
+            boolean search = command.startsWith("/search ");
+            List<String> names = collectNames(command);
+            if (names == null) return true;
+            System.out.println("\n[Server Response]");
+            System.out.println((search ? "Rezultatet e kërkimit për '" + command.substring(8).trim() + "'"
+                    : "Lista e file-ve") + " (" + shards.size() + " shard-e):");
+            for (String name : names) System.out.println(name);
+            if (names.isEmpty()) System.out.println(search ? "(Nuk u gjet asnjë file)" : "(Nuk ka file)");
+            return true;
+        }
+        String key = routingKey(command);
+        useShard(key != null ? ownerOf(key) : defaultServer);
+        return false;
+    }
+
     private void handleLogin(String command) throws IOException {
         String[] parts = command.split("\\s+", 2);
         if (parts.length < 2) {
@@ -81,7 +226,17 @@ public class CommandProcessor {
         }
 
         String password = parts[1];
-        sendAndReceive(command);
+        // në cluster çdo shard mban sesionin e vet, login-i dërgohet te të gjithë
+        boolean first = true;
+        for (InetSocketAddress shard : allShards()) {
+            useShard(shard);
+            if (first) {
+                sendAndReceive(command);
+                first = false;
+            } else {
+                request(command);
+            }
+        }
 
         if (password.equals(ADMIN_PASSWORD)) {
             isAdmin = true;
@@ -103,62 +258,714 @@ public class CommandProcessor {
             System.out.println("Gabim: File nuk ekziston ose nuk është valid.");
             return;
         }
+        upload(filePath);
+    }
 
+    // true kur serveri e pranoi dhe e ruajti file-in
+    private boolean upload(Path filePath) throws IOException {
         String fileName = filePath.getFileName().toString();
-        byte[] fileBytes = Files.readAllBytes(filePath);
-        String base64Content = Base64.getEncoder().encodeToString(fileBytes);
+        long size = Files.size(filePath);
+
+        // serveri e krahason me SHA-256 e asaj që mori para se ta ruajë file-in
+        String digest = Utils.sha256(filePath);
+        String response = request("/upload_begin " + fileName + " " + size + " " + digest);
+        if (response == null) return false;
+        if (!response.startsWith("UPLOAD:")) {
+            System.out.println("\n[Server Response]\n" + response);
+            return false;
+        }
+
+        String[] header = response.split(":");
+        int uploadId = Integer.parseInt(header[1]);
+        int chunkSize = Integer.parseInt(header[2]);
+        long offset = Long.parseLong(header[3]);
+        int window = Integer.parseInt(header[4]);
+        if (offset > 0) {
+            System.out.println("Upload-i vazhdon nga offset " + offset + " / " + size);
+        }
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            Compression.Codec uploadCodec = codec != null ? codec : Compression.Codec.NONE;
+            if (uploadCodec != Compression.Codec.NONE && !Compression.worthCompressing(uploadCodec,
+                    sample(channel, size, chunkSize))) {
+                uploadCodec = Compression.Codec.NONE;
+            }
+            ChunkUploader uploader = new ChunkUploader(channel, uploadId, size, chunkSize, window, offset, uploadCodec);
+            if (!uploader.run()) return false;
+        }
+
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+        System.out.printf("U dërguan %d bytes (%.2f MB/s)%n", size - offset,
+                (size - offset) / seconds / (1024.0 * 1024.0));
+        String committed = request("/upload_commit " + uploadId);
+        if (committed == null) return false;
+        System.out.println("\n[Server Response]\n" + committed);
+        return committed.startsWith("File u pranuar");
+    }
+
+    // emrat merren nga /search, shkarkimet bëhen paralelisht mbi AsyncClient; kufiri i shpejtësisë
+    // ndahet në mënyrë të barabartë mes shkarkimeve njëkohësisht
+    private void handleMultiGet(String pattern) throws IOException {
+        if (pattern.isEmpty()) {
+            System.out.println("Përdorimi: /mget <pattern>");
+            return;
+        }
+
+        List<String> names = collectNames("/search " + pattern);
+        if (names == null) return;
+        if (names.isEmpty()) {
+            System.out.println("Nuk u gjet asnjë file për '" + pattern + "'.");
+            return;
+        }
+
+        ensureDownloadsDirExists();
+        int parallel = Math.min(ServerConfig.CLIENT_DOWNLOADS, names.size());
+        long rate = ServerConfig.MGET_RATE > 0 ? Math.max(1, ServerConfig.MGET_RATE / parallel) : 0;
+        System.out.println("Po shkarkohen " + names.size() + " file (" + parallel + " njëkohësisht"
+                + (rate > 0 ? ", " + Utils.formatFileSize(ServerConfig.MGET_RATE) + "/s gjithsej" : "") + ")...");
+
+        long start = System.nanoTime();
+        long[] bytes = new long[1];
+        int[] failed = new int[1];
+        // një AsyncClient për çdo shard që zotëron ndonjë nga file-t
+        Map<InetSocketAddress, AsyncClient> clients = new LinkedHashMap<>();
+        try {
+            List<CompletableFuture<Path>> downloads = new ArrayList<>();
+            for (String name : names) {
+                InetSocketAddress shard = ownerOf(name);
+                AsyncClient client = clients.get(shard);
+                if (client == null) {
+                    client = new AsyncClient(shard.getAddress(), shard.getPort(), ServerConfig.CLIENT_IN_FLIGHT, parallel);
+                    clients.put(shard, client);
+                }
+                downloads.add(client.download(name, Paths.get(ServerConfig.DOWNLOADS), rate)
+                        .whenComplete((path, error) -> {
+                            synchronized (bytes) {
+                                if (error != null) {
+                                    failed[0]++;
+                                    System.out.println(" - " + name + ": " + rootCause(error).getMessage());
+                                    return;
+                                }
+                                try {
+                                    long size = Files.size(path);
+                                    bytes[0] += size;
+                                    System.out.println(" - " + name + " (" + Utils.formatFileSize(size) + ")");
+                                } catch (IOException e) {
+                                    failed[0]++;
+                                }
+                            }
+                        }));
+            }
+            for (CompletableFuture<Path> download : downloads) {
+                try {
+                    download.join();
+                } catch (RuntimeException ignored) {
+                }
+            }
+        } finally {
+            for (AsyncClient client : clients.values()) client.close();
+        }
+
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+        System.out.printf("U shkarkuan %d/%d file, %s në %.2f s (%.2f MB/s)%n", names.size() - failed[0],
+                names.size(), Utils.formatFileSize(bytes[0]), seconds, bytes[0] / seconds / (1024.0 * 1024.0));
+    }
+
+    // shkarkim që serveri e ndan me klientët e tjerë që po marrin të njëjtin file në grupin multicast
+    private void handleFanout(String filename) throws IOException {
+        if (filename.isEmpty()) {
+            System.out.println("Përdorimi: /fanout <file>");
+            return;
+        }
+
+        ensureDownloadsDirExists();
+        long start = System.nanoTime();
+        Path path;
+        try (AsyncClient client = new AsyncClient(serverAddress, serverPort)) {
+            path = client.fanout(filename, Paths.get(ServerConfig.DOWNLOADS)).join();
+        } catch (RuntimeException e) {
+            System.out.println("Gabim: " + rootCause(e).getMessage());
+            return;
+        }
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+        long size = Files.size(path);
+        System.out.printf("File u shkarkua: %s (%d bytes, %.2f MB/s)%n", path, size,
+                size / seconds / (1024.0 * 1024.0));
+    }
+
+    // përditëson kopjen në downloads/ duke marrë vetëm blloqet që kanë ndryshuar në server
+    private void handleSync(String filename) throws IOException {
+        if (filename.isEmpty()) {
+            System.out.println("Përdorimi: /sync <file>");
+            return;
+        }
+
+        ensureDownloadsDirExists();
+        Path local = Paths.get(ServerConfig.DOWNLOADS, Paths.get(filename).getFileName().toString());
+        long start = System.nanoTime();
+        DeltaSync.Result result;
+        try (AsyncClient client = new AsyncClient(serverAddress, serverPort)) {
+            result = new DeltaSync(client).sync(filename, local);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long transferred = result.signatureBytes() + result.dataBytes();
+        if (result.fullDownload()) {
+            System.out.printf("File u shkarkua i plotë: %s (%s) në %.2f s%n", local,
+                    Utils.formatFileSize(result.size()), seconds);
+        } else {
+            System.out.printf("File u sinkronizua: %s, %d/%d blloqe u morën nga serveri%n", local,
+                    result.transferredBlocks(), result.blocks());
+        }
+        System.out.printf("U transferuan %s (nënshkrime %s + të dhëna %s) për një file %s (%.1f%%) në %.2f s%n",
+                Utils.formatFileSize(transferred), Utils.formatFileSize(result.signatureBytes()),
+                Utils.formatFileSize(result.dataBytes()), Utils.formatFileSize(result.size()),
+                result.size() > 0 ? transferred * 100.0 / result.size() : 0.0, seconds);
+    }
+
+    // emrat nga /list ose /search, nga të gjithë shard-et e cluster-it; null (me mesazhin e printuar) kur asnjë
+    // përgjigje nuk është listë
+    private List<String> collectNames(String command) throws IOException {
+        TreeSet<String> names = new TreeSet<>();
+        List<String> silent = new ArrayList<>();
+        String failure = null;
+        boolean listed = false;
+        for (InetSocketAddress shard : allShards()) {
+            useShard(shard);
+            String response = request(command);
+            if (response != null && response.startsWith("PAGE:")) {
+                StringBuilder collected = new StringBuilder();
+                response = receivePages(lastResponse, collected::append) ? collected.toString() : null;
+            }
+            if (response == null) {
+                silent.add(shard.getHostString() + ":" + shard.getPort());
+                continue;
+            }
+            if (!response.startsWith("Lista e file-ve") && !response.startsWith("Rezultatet")) {
+                if (failure == null) failure = response;
+                continue;
+            }
+            listed = true;
+            String[] lines = response.split("\n");
+            for (int i = 1; i < lines.length; i++) {
+                String line = lines[i].trim();
+                if (!line.isEmpty() && !line.startsWith("(")) names.add(line);
+            }
+        }
+        if (!silent.isEmpty()) {
+            System.out.println("VINI RE: Lista e file-ve nuk u mor e plotë nga " + String.join(", ", silent) + ".");
+            if (ring == null) return null;
+        }
+        if (!listed) {
+            if (failure != null) System.out.println("\n[Server Response]\n" + failure);
+            return null;
+        }
+        return new ArrayList<>(names);
+    }
+
+    // pas shtimit ose heqjes së një shard-i: çdo file që ring-u i ri ia cakton një shard-i tjetër kalon te pronari
+    // i ri (shkarkim, upload, fshirje), të tjerët nuk preken. Argumentet janë shard-e të hequra nga udp.cluster
+    // që ende mbajnë file
+    private void handleRebalance(String args) throws IOException {
+        if (ring == null) {
+            System.out.println("Rebalancimi kërkon udp.cluster me listën e shard-eve.");
+            return;
+        }
+        Map<String, InetSocketAddress> sources = new LinkedHashMap<>(shards);
+        for (Map.Entry<String, InetSocketAddress> removed : parseCluster(args).entrySet()) {
+            sources.putIfAbsent(removed.getKey(), removed.getValue());
+        }
+
+        // të gjitha listat merren para zhvendosjes, që file-t e zhvendosur të mos numërohen dy herë
+        Map<String, List<String>> misplaced = new LinkedHashMap<>();
+        int kept = 0;
+        for (Map.Entry<String, InetSocketAddress> source : sources.entrySet()) {
+            useShard(source.getValue());
+            if (!shards.containsKey(source.getKey())) request("/login " + ADMIN_PASSWORD);
+            String response = request("/list");
+            if (response != null && response.startsWith("PAGE:")) {
+                StringBuilder collected = new StringBuilder();
+                response = receivePages(lastResponse, collected::append) ? collected.toString() : null;
+            }
+            if (response == null || !response.startsWith("Lista e file-ve")) {
+                System.out.println("VINI RE: Shard-i " + source.getKey() + " nuk dha listën e file-ve, u anashkalua.");
+                continue;
+            }
+            String[] lines = response.split("\n");
+            for (int i = 1; i < lines.length; i++) {
+                String name = lines[i].trim();
+                if (name.isEmpty() || name.startsWith("(")) continue;
+                if (ring.owner(name).equals(source.getKey())) {
+                    kept++;
+                } else {
+                    misplaced.computeIfAbsent(source.getKey(), k -> new ArrayList<>()).add(name);
+                }
+            }
+        }
+
+        Path staging = Files.createTempDirectory("rebalance");
+        int moved = 0;
+        int failed = 0;
+        try {
+            for (Map.Entry<String, List<String>> source : misplaced.entrySet()) {
+                InetSocketAddress from = sources.get(source.getKey());
+                try (AsyncClient client = new AsyncClient(from.getAddress(), from.getPort())) {
+                    for (String name : source.getValue()) {
+                        String owner = ring.owner(name);
+                        System.out.println(" - " + name + ": " + source.getKey() + " → " + owner);
+                        if (moveFile(client, name, from, shards.get(owner), staging)) {
+                            moved++;
+                        } else {
+                            failed++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            try (Stream<Path> leftovers = Files.list(staging)) {
+                for (Path leftover : leftovers.toList()) Files.deleteIfExists(leftover);
+            }
+            Files.deleteIfExists(staging);
+        }
+        System.out.println("Rebalancimi: " + moved + " file u zhvendosën, " + kept + " mbetën te pronari"
+                + (failed > 0 ? ", " + failed + " dështuan (provoni përsëri)" : "") + ".");
+    }
+
+    // file-i fshihet nga burimi vetëm pasi pronari i ri e ka ruajtur
+    private boolean moveFile(AsyncClient client, String name, InetSocketAddress from, InetSocketAddress to,
+                             Path staging) throws IOException {
+        Path local;
+        try {
+            local = client.download(name, staging).join();
+        } catch (RuntimeException e) {
+            System.out.println("   Gabim gjatë shkarkimit: " + rootCause(e).getMessage());
+            return false;
+        }
+        try {
+            useShard(to);
+            if (!upload(local)) return false;
+        } finally {
+            Files.deleteIfExists(local);
+        }
+        useShard(from);
+        String response = request("/delete " + name);
+        return response != null && response.startsWith("File u fshi");
+    }
 
-        String message = "/upload_start " + fileName + ":" + base64Content;
-        sendAndReceive(message);
+    private static Throwable rootCause(Throwable error) {
+        while (error.getCause() != null) error = error.getCause();
+        return error;
     }
 
     private void sendAndReceive(String message) throws IOException {
-        byte[] sendData = message.getBytes(StandardCharsets.UTF_8);
-        DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, serverAddress, serverPort);
-        socket.send(sendPacket);
+        String response = request(message);
+        if (response == null) return;
+
+        if (response.startsWith("TRANSFER:")) {
+            handleDownloadResponse(response);
+        } else if (response.startsWith("PAGE:")) {
+            handlePagedResponse(message, lastResponse);
+        } else {
+            System.out.println("\n[Server Response]\n" + response);
+        }
+    }
+
+    // një datagram i humbur nuk e rrëzon kërkesën: pas çdo afati e njëjta kërkesë (me të njëjtën id) ridërgohet,
+    // dhe një përgjigje e vonuar e dërgimit të parë pranohet edhe pas ridërgimit. Kërkesat tekst nuk kanë id, kështu
+    // ridërgohen vetëm kornizat binare; komandat që nuk mund të përsëriten pa efekt (commit, fshirje) dërgohen
+    // vetëm një herë. Para kërkesës hidhen datagramet e mbetura, p.sh. përgjigja e vonuar e një kërkese që skadoi
+    private String request(String message) throws IOException {
+        DatagramPacket out = commandPacket(message);
+        int requestId = requestIdOf(out);
 
         byte[] receiveBuffer = new byte[BUFFER_SIZE];
         DatagramPacket receivePacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
 
         int originalTimeout = socket.getSoTimeout();
-        int timeout = isAdmin ? 1000 : 3000;
-        socket.setSoTimeout(timeout);
+        int timeout = message.startsWith("/upload_commit") ? COMMIT_TIMEOUT_MS : isAdmin ? 1000 : 3000;
+        int attempts = 1;
+        boolean repeatable = requestId >= 0 && !message.startsWith("/upload_commit") && !message.startsWith("/delete");
+        int maxAttempts = repeatable ? REQUEST_ATTEMPTS : 1;
 
         try {
-            socket.receive(receivePacket);
-            String response = new String(receivePacket.getData(), 0, receivePacket.getLength(), StandardCharsets.UTF_8);
-
-            if (response.startsWith("DOWNLOAD:")) {
-                handleDownloadResponse(response);
-            } else {
-                System.out.println("\n[Server Response]\n" + response);
+            drainStale(receivePacket);
+            socket.send(out);
+            socket.setSoTimeout(timeout);
+            while (true) {
+                try {
+                    socket.receive(receivePacket);
+                } catch (SocketTimeoutException e) {
+                    if (attempts >= maxAttempts) throw e;
+                    attempts++;
+                    socket.send(out);
+                    continue;
+                }
+                ByteBuffer packet = ByteBuffer.wrap(receiveBuffer, 0, receivePacket.getLength());
+                if (TransferFrame.isFrame(packet)) continue;
+                if (!CommandFrame.isCommand(packet)) {
+                    lastResponse = Arrays.copyOf(receiveBuffer, receivePacket.getLength());
+                    return new String(receiveBuffer, 0, receivePacket.getLength(), StandardCharsets.UTF_8);
+                }
+                // përgjigjet e vonuara të kërkesave të mëparshme injorohen
+                if (CommandFrame.requestId(packet) == requestId) {
+                    return StandardCharsets.UTF_8.decode(CommandFrame.payload(packet)).toString();
+                }
             }
         } catch (SocketTimeoutException e) {
-            System.out.println("VINI RE: Serveri nuk u përgjigj brenda " + timeout + " millisekondave.");
+            System.out.println("VINI RE: Serveri nuk u përgjigj brenda " + timeout * attempts + " millisekondave.");
+            return null;
+        } finally {
+            socket.setSoTimeout(originalTimeout);
+        }
+    }
+
+    // lexon pa pritur gjithçka që është në radhë të socket-it; afati rikthehet nga thirrësi
+    private void drainStale(DatagramPacket packet) throws IOException {
+        socket.setSoTimeout(1);
+        try {
+            while (true) socket.receive(packet);
+        } catch (SocketTimeoutException e) {
+            // radha është bosh
+        }
+    }
+
+    private void handlePagedResponse(String command, byte[] first) throws IOException {
+        System.out.println("\n[Server Response]");
+        if (!receivePages(first, System.out::print)) {
+            System.out.println("\nVINI RE: Përgjigjja u ndërpre, mungojnë pjesë nga serveri.");
+            return;
+        }
+
+        System.out.println();
+        String cursor = pageHeader(first, first.length)[4];
+        if (!cursor.equals("-") && command.startsWith("/read ")) {
+            String[] args = command.substring(6).trim().split("\\s+");
+            System.out.println("(Ka vazhdim: /read " + args[0] + " " + cursor + " " + ServerConfig.READ_LIMIT + ")");
+        }
+    }
+
+    // "PAGE:id:pjesa:totali:cursor[:z]"; null kur paketa nuk është faqe
+    private static String[] pageHeader(byte[] packet, int length) {
+        if (length < 5 || packet[0] != 'P' || packet[1] != 'A' || packet[2] != 'G' || packet[3] != 'E'
+                || packet[4] != ':') return null;
+        int newline = 0;
+        while (newline < length && packet[newline] != '\n') newline++;
+        String[] header = new String(packet, 0, newline, StandardCharsets.UTF_8).split(":");
+        return header.length >= 5 ? header : null;
+    }
+
+    // pjesët tekst i jepen out-it sipas radhës sapo mbërrijnë; pjesët e kompresuara mblidhen dhe shpalosen
+    // në fund; grupi tjetër kërkohet kur mbaron i pari
+    private boolean receivePages(byte[] first, Consumer<String> out) throws IOException {
+        String[] header = pageHeader(first, first.length);
+        int responseId = Integer.parseInt(header[1]);
+        int total = Integer.parseInt(header[3]);
+        boolean compressed = header.length > 5 && header[5].equals("z");
+        ByteArrayOutputStream collected = compressed ? new ByteArrayOutputStream() : null;
+
+        byte[][] parts = new byte[total][];
+        int next = 0;
+        int requested = Math.min(total, ServerConfig.PAGE_BATCH);
+        int retries = 0;
+
+        DatagramPacket in = new DatagramPacket(new byte[BUFFER_SIZE], BUFFER_SIZE);
+        int originalTimeout = socket.getSoTimeout();
+        socket.setSoTimeout(ServerConfig.RETRANSMIT_MS * 5);
+        try {
+            byte[] packet = first;
+            int length = first.length;
+            while (true) {
+                String[] h = packet != null ? pageHeader(packet, length) : null;
+                if (h != null) {
+                    int part = Integer.parseInt(h[2]);
+                    if (Integer.parseInt(h[1]) == responseId && part < total && parts[part] == null) {
+                        int body = 0;
+                        while (packet[body] != '\n') body++;
+                        parts[part] = Arrays.copyOfRange(packet, body + 1, length);
+                        retries = 0;
+                    }
+                }
+                while (next < total && parts[next] != null) {
+                    if (compressed) collected.write(parts[next]);
+                    else out.accept(new String(parts[next], StandardCharsets.UTF_8));
+                    parts[next++] = new byte[0];
+                }
+                if (next == total) {
+                    if (compressed) out.accept(new String(Compression.decompress(collected.toByteArray()),
+                            StandardCharsets.UTF_8));
+                    return true;
+                }
+                if (next == requested) {
+                    sendCommand("/page " + responseId + " " + requested + " " + ServerConfig.PAGE_BATCH);
+                    requested = Math.min(total, requested + ServerConfig.PAGE_BATCH);
+                }
+
+                try {
+                    socket.receive(in);
+                    packet = in.getData();
+                    length = in.getLength();
+                } catch (SocketTimeoutException e) {
+                    if (++retries > 5) return false;
+                    sendCommand("/page " + responseId + " " + next + " " + (requested - next));
+                    packet = null;
+                }
+            }
         } finally {
             socket.setSoTimeout(originalTimeout);
         }
     }
 
-    private void handleDownloadResponse(String response) {
-        String[] parts = response.split(":", 3);
-        if (parts.length < 3) {
+    // kthen id-në e kërkesës, -1 për komandat tekst
+    private int sendCommand(String message) throws IOException {
+        DatagramPacket out = commandPacket(message);
+        socket.send(out);
+        return requestIdOf(out);
+    }
+
+    // në protokollin binar fjala e parë bëhet opcode dhe pjesa tjetër fusha
+    private DatagramPacket commandPacket(String message) {
+        Command command = ServerConfig.BINARY_PROTOCOL ? Command.fromText(message) : null;
+        if (command == null) {
+            byte[] data = message.getBytes(StandardCharsets.UTF_8);
+            return new DatagramPacket(data, data.length, serverAddress, serverPort);
+        }
+
+        String args = Command.argumentsOf(message);
+        String[] fields = args.isEmpty() ? new String[0] : args.split("\\s+");
+        byte[] frame = new byte[BUFFER_SIZE];
+        int length = CommandFrame.encodeRequest(frame, command, ++nextRequestId, fields);
+        return new DatagramPacket(frame, length, serverAddress, serverPort);
+    }
+
+    private static int requestIdOf(DatagramPacket out) {
+        ByteBuffer packet = ByteBuffer.wrap(out.getData(), 0, out.getLength());
+        return CommandFrame.isCommand(packet) ? CommandFrame.requestId(packet) : -1;
+    }
+
+    private void handleDownloadResponse(String response) throws IOException {
+        String[] parts = response.split(":", 8);
+        if (parts.length < 8) {
             System.out.println("Gabim: Përgjigje e pavlefshme për download");
             return;
         }
 
-        String filename = parts[1];
-        byte[] fileBytes = Base64.getDecoder().decode(parts[2]);
+        int transferId = Integer.parseInt(parts[1]);
+        long size = Long.parseLong(parts[2]);
+        int chunkSize = Integer.parseInt(parts[3]);
+        int chunkCount = Integer.parseInt(parts[4]);
+        int window = Integer.parseInt(parts[5]);
+        String digest = Utils.isSha256(parts[6]) ? parts[6] : null;
+        String filename = Paths.get(parts[7]).getFileName().toString();
 
         ensureDownloadsDirExists();
+        Path target = Paths.get(ServerConfig.DOWNLOADS, filename);
+        Path partial = Paths.get(ServerConfig.DOWNLOADS, filename + ".part");
 
-        String outName = ServerConfig.DOWNLOADS + "/" + filename;
+        ReceiveWindow received = new ReceiveWindow(chunkCount, window);
+        byte[] ackFrame = new byte[ReceiveWindow.ackFrameSize(window)];
+        DatagramPacket in = new DatagramPacket(new byte[BUFFER_SIZE], BUFFER_SIZE);
+        ByteBuffer frame = ByteBuffer.wrap(in.getData());
+        ByteBuffer inflated = ByteBuffer.allocate(chunkSize);
+        int ackEvery = ReceiveWindow.ackEvery(window);
 
-        try (FileOutputStream fos = new FileOutputStream(outName)) {
-            fos.write(fileBytes);
-            System.out.println("File u shkarkua: downloads/" + filename);
-        } catch (IOException e) {
-            System.out.println("Gabim në shkrimin e file: " + e.getMessage());
+        int originalTimeout = socket.getSoTimeout();
+        socket.setSoTimeout(ServerConfig.RETRANSMIT_MS);
+        long start = System.nanoTime();
+
+        // READ që pariteti të rindërtojë një chunk nga të tjerët e grupit të shkruar tashmë
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Parity.Decoder parity = new Parity.Decoder(channel, size, chunkSize, chunkCount);
+            int sinceAck = 0;
+            boolean gapReported = false;
+            long lastData = System.currentTimeMillis();
+
+            if (chunkCount > 0) sendAck(ackFrame, received, transferId);
+
+            while (!received.isComplete()) {
+                try {
+                    socket.receive(in);
+                } catch (SocketTimeoutException e) {
+                    if (System.currentTimeMillis() - lastData > ServerConfig.TRANSFER_IDLE_MS) {
+                        System.out.println("VINI RE: Transferimi u ndërpre, serveri nuk dërgon më të dhëna.");
+                        return;
+                    }
+                    sendAck(ackFrame, received, transferId);
+                    sinceAck = 0;
+                    gapReported = false;
+                    continue;
+                }
+
+                frame.clear().limit(in.getLength());
+                if (!TransferFrame.isFrame(frame) || TransferFrame.transferId(frame) != transferId) continue;
+                byte type = TransferFrame.type(frame);
+                if (type != TransferFrame.DATA && type != TransferFrame.PARITY) continue;
+
+                lastData = System.currentTimeMillis();
+                int seq;
+                if (type == TransferFrame.PARITY) {
+                    if (!TransferFrame.checksumMatches(frame)) continue;
+                    seq = parity.onParity(frame, received);
+                    if (seq < 0) continue;
+                } else {
+                    seq = TransferFrame.sequence(frame);
+                    if (seq < 0 || seq >= chunkCount || received.isReceived(seq)) continue;
+                    if (!TransferFrame.checksumMatches(frame)) continue;
+
+                    long position = (long) seq * chunkSize;
+                    ByteBuffer chunk = TransferFrame.chunkData(frame, inflated,
+                            (int) Math.min(chunkSize, size - position));
+                    if (chunk == null) {
+                        // gjatësi e gabuar: ACK-u i menjëhershëm e tregon chunk-un si mungesë
+                        sendAck(ackFrame, received, transferId);
+                        sinceAck = 0;
+                        continue;
+                    }
+                    while (chunk.hasRemaining()) {
+                        position += channel.write(chunk, position);
+                    }
+                    received.markReceived(seq);
+                    parity.onData(seq, received);
+                }
+
+                sinceAck++;
+                boolean gap = seq > received.cumulative() && !gapReported;
+                if (sinceAck >= ackEvery || gap || received.isComplete()) {
+                    sendAck(ackFrame, received, transferId);
+                    sinceAck = 0;
+                    gapReported = gap;
+                }
+            }
+
+            for (int i = 0; i < 2; i++) sendAck(ackFrame, received, transferId);
+        } finally {
+            socket.setSoTimeout(originalTimeout);
+        }
+
+        if (digest != null && !digest.equalsIgnoreCase(Utils.sha256(partial))) {
+            Files.deleteIfExists(partial);
+            System.out.println("Gabim: SHA-256 e file-it të shkarkuar nuk përputhet me atë të serverit. Provoni përsëri.");
+            return;
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+        System.out.printf("File u shkarkua: downloads/%s (%d bytes, %.2f MB/s)%n",
+                filename, size, size / seconds / (1024.0 * 1024.0));
+    }
+
+    private void sendAck(byte[] ackFrame, ReceiveWindow received, int transferId) throws IOException {
+        int length = received.writeAck(ackFrame, transferId);
+        socket.send(new DatagramPacket(ackFrame, length, serverAddress, serverPort));
+    }
+
+    // chunk-u i parë, i mesit dhe i fundit, si te serveri
+    private static ByteBuffer sample(FileChannel channel, long size, int chunkSize) throws IOException {
+        ByteBuffer sample = ByteBuffer.allocate(3 * chunkSize);
+        long covered = 0;
+        for (long position : new long[]{0, size / 2, Math.max(0, size - chunkSize)}) {
+            position = Math.max(position, covered);
+            int n = (int) Math.min(chunkSize, size - position);
+            if (n <= 0) continue;
+            int start = sample.position();
+            sample.limit(start + n);
+            while (sample.hasRemaining()) {
+                if (channel.read(sample, position + sample.position() - start) < 0) break;
+            }
+            covered = position + n;
+        }
+        return sample.flip();
+    }
+
+    private class ChunkUploader extends SendWindow {
+        private final FileChannel channel;
+        private final int uploadId;
+        private final long size;
+        private final int chunkSize;
+        private final byte[] frame;
+        private final ByteBuffer payload;
+        private final DatagramPacket out;
+        private final Compression.Codec codec;
+        private final ByteBuffer raw;
+
+        ChunkUploader(FileChannel channel, int uploadId, long size, int chunkSize, int window, long offset,
+                      Compression.Codec codec) {
+            super((int) ((size + chunkSize - 1) / chunkSize), window, (int) (offset / chunkSize));
+            this.channel = channel;
+            this.uploadId = uploadId;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.frame = new byte[TransferFrame.DATA_HEADER_SIZE + chunkSize];
+            this.payload = ByteBuffer.wrap(frame, TransferFrame.DATA_HEADER_SIZE, chunkSize).slice();
+            this.out = new DatagramPacket(frame, frame.length, serverAddress, serverPort);
+            this.codec = codec;
+            this.raw = codec != Compression.Codec.NONE ? ByteBuffer.allocate(chunkSize) : null;
+        }
+
+        boolean run() throws IOException {
+            DatagramPacket in = new DatagramPacket(new byte[BUFFER_SIZE], BUFFER_SIZE);
+            ByteBuffer ack = ByteBuffer.wrap(in.getData());
+            int originalTimeout = socket.getSoTimeout();
+            socket.setSoTimeout(ServerConfig.RETRANSMIT_MS);
+            try {
+                long lastAck = System.currentTimeMillis();
+                fill(lastAck);
+                while (!isComplete()) {
+                    long now;
+                    try {
+                        socket.receive(in);
+                        now = System.currentTimeMillis();
+                    } catch (SocketTimeoutException e) {
+                        now = System.currentTimeMillis();
+                        if (now - lastAck > ServerConfig.TRANSFER_IDLE_MS) {
+                            System.out.println("VINI RE: Upload-i u ndërpre. Provoni përsëri për ta vazhduar.");
+                            return false;
+                        }
+                        retransmitExpired(now, ServerConfig.RETRANSMIT_MS);
+                        continue;
+                    }
+
+                    ack.clear().limit(in.getLength());
+                    if (!TransferFrame.isFrame(ack)
+                            || TransferFrame.type(ack) != TransferFrame.ACK
+                            || TransferFrame.transferId(ack) != uploadId) continue;
+
+                    lastAck = now;
+                    onAck(ack, now, ServerConfig.RETRANSMIT_MS / 4);
+                    retransmitExpired(now, ServerConfig.RETRANSMIT_MS);
+                }
+                return true;
+            } finally {
+                socket.setSoTimeout(originalTimeout);
+            }
+        }
+
+        @Override
+        protected void sendChunk(int seq) throws IOException {
+            long position = (long) seq * chunkSize;
+            int length = (int) Math.min(chunkSize, size - position);
+
+            ByteBuffer target = raw != null ? raw : payload;
+            target.clear().limit(length);
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) break;
+            }
+
+            byte type = TransferFrame.UPLOAD;
+            if (raw != null) {
+                int compressed = Compression.compress(codec, raw.flip(), payload.clear());
+                if (compressed >= 0) {
+                    type |= TransferFrame.COMPRESSED;
+                    length = compressed;
+                } else {
+                    payload.put(0, raw, 0, length);
+                }
+            }
+
+            TransferFrame.writeHeader(frame, 0, type, uploadId, seq);
+            TransferFrame.writeChecksum(frame, length);
+            out.setLength(TransferFrame.DATA_HEADER_SIZE + length);
+            socket.send(out);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,252 @@
+package client;
+
+import common.BlockSignatures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// sinkronizim me delta: serveri publikon nënshkrimet e blloqeve të tij, klienti gjen me checksum të lëvizshëm
+// cilat blloqe i ka tashmë në kopjen lokale dhe kërkon vetëm të tjerat; rezultati verifikohet me SHA-256
+public class DeltaSync {
+    // argumentet e /delta_get duhet të nxënë në një datagram kërkese
+    private static final int MAX_RANGES_LENGTH = 3000;
+    // mbi këtë pjesë të blloqeve që mungojnë, shkarkimi i plotë kushton njëlloj dhe është më i thjeshtë
+    private static final double MAX_MISSING_FRACTION = 0.75;
+
+    private final AsyncClient client;
+
+    public DeltaSync(AsyncClient client) {
+        this.client = client;
+    }
+
+    public record Result(long size, int blocks, int transferredBlocks, long signatureBytes, long dataBytes,
+                         boolean fullDownload) {}
+
+    public Result sync(String filename, Path local) throws IOException {
+        if (!Files.isRegularFile(local)) return fullDownload(filename, local, 0);
+
+        Path signatureFile = local.resolveSibling(local.getFileName() + ".sig");
+        BlockSignatures signatures;
+        long signatureBytes;
+        try {
+            await(client.fetch("/delta_sig " + filename, signatureFile));
+            byte[] encoded = Files.readAllBytes(signatureFile);
+            signatureBytes = encoded.length;
+            signatures = BlockSignatures.decode(ByteBuffer.wrap(encoded));
+        } finally {
+            Files.deleteIfExists(signatureFile);
+        }
+
+        int blocks = signatures.blockCount();
+        long[] found = findBlocks(local, signatures);
+        BitSet requested = new BitSet(blocks);
+        for (int i = 0; i < blocks; i++) {
+            if (found[i] < 0) requested.set(i);
+        }
+        String ranges = encodeRanges(requested, MAX_RANGES_LENGTH);
+        if (requested.cardinality() > blocks * MAX_MISSING_FRACTION) {
+            return fullDownload(filename, local, signatureBytes);
+        }
+
+        long dataBytes = 0;
+        Path delta = local.resolveSibling(local.getFileName() + ".delta");
+        try {
+            if (!requested.isEmpty()) {
+                await(client.fetch("/delta_get " + filename + " " + signatures.blockSize() + " " + ranges, delta));
+                dataBytes = Files.size(delta);
+            }
+            if (!assemble(local, found, requested, delta, signatures)) {
+                System.out.println("VINI RE: Kontrolli SHA-256 dështoi, po shkarkohet i gjithë file.");
+                return fullDownload(filename, local, signatureBytes + dataBytes);
+            }
+        } finally {
+            Files.deleteIfExists(delta);
+        }
+        return new Result(signatures.fileSize(), blocks, requested.cardinality(), signatureBytes, dataBytes, false);
+    }
+
+    private Result fullDownload(String filename, Path local, long signatureBytes) throws IOException {
+        Path path = await(client.download(filename, local.toAbsolutePath().getParent()));
+        long size = Files.size(path);
+        return new Result(size, 0, 0, signatureBytes, size, true);
+    }
+
+    // për çdo bllok të serverit, pozicioni ku gjendet në kopjen lokale ose -1
+    static long[] findBlocks(Path local, BlockSignatures signatures) throws IOException {
+        int blocks = signatures.blockCount();
+        long[] found = new long[blocks];
+        Arrays.fill(found, -1);
+        if (blocks == 0) return found;
+
+        try (FileChannel channel = FileChannel.open(local, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) return found;
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            MessageDigest md5 = BlockSignatures.digest("MD5");
+            int blockSize = signatures.blockSize();
+
+            // filtri i bit-eve mbi checksum-in e dobët e shmang kërkimin në map për shumicën e pozicioneve
+            int bits = Math.max(16, 36 - Integer.numberOfLeadingZeros(blocks));
+            BitSet filter = new BitSet(1 << bits);
+            Map<Integer, int[]> byWeak = new HashMap<>();
+            for (int i = 0; i < blocks; i++) {
+                if (signatures.blockLength(i) != blockSize) continue;
+                int weak = signatures.weakAt(i);
+                filter.set(mix(weak, bits));
+                int[] same = byWeak.get(weak);
+                same = same == null ? new int[1] : Arrays.copyOf(same, same.length + 1);
+                same[same.length - 1] = i;
+                byWeak.put(weak, same);
+            }
+
+            if (size >= blockSize) {
+                int position = 0;
+                int weak = BlockSignatures.weak(data, 0, blockSize);
+                while (true) {
+                    boolean matched = false;
+                    int[] candidates;
+                    if (filter.get(mix(weak, bits)) && (candidates = byWeak.get(weak)) != null) {
+                        md5.update(data.slice(position, blockSize));
+                        byte[] digest = md5.digest();
+                        for (int block : candidates) {
+                            if (signatures.strongMatches(block, digest)) {
+                                if (found[block] < 0) found[block] = position;
+                                matched = true;
+                            }
+                        }
+                    }
+                    if (matched) {
+                        position += blockSize;
+                        if (position > size - blockSize) break;
+                        weak = BlockSignatures.weak(data, position, blockSize);
+                    } else {
+                        if (position + blockSize >= size) break;
+                        weak = BlockSignatures.roll(weak, data.get(position), data.get(position + blockSize), blockSize);
+                        position++;
+                    }
+                }
+            }
+
+            // blloku i fundit i shkurtër krahasohet vetëm me fundin e kopjes lokale
+            int last = blocks - 1;
+            int lastLength = signatures.blockLength(last);
+            if (lastLength < blockSize && found[last] < 0 && size >= lastLength) {
+                int position = (int) (size - lastLength);
+                if (BlockSignatures.weak(data, position, lastLength) == signatures.weakAt(last)) {
+                    md5.update(data.slice(position, lastLength));
+                    if (signatures.strongMatches(last, md5.digest())) found[last] = position;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int mix(int weak, int bits) {
+        return ((weak ^ (weak >>> 16)) * 0x9E3779B9) >>> (32 - bits);
+    }
+
+    // "a-b,c,..." me blloqet e kërkuara; kur teksti del shumë i gjatë bashkohen vargjet me boshllëqe të vogla,
+    // blloqet e ndërmjetme shtohen te requested dhe merren nga serveri edhe pse ekzistojnë lokalisht
+    static String encodeRanges(BitSet requested, int maxLength) {
+        List<int[]> runs = new ArrayList<>();
+        for (int first = requested.nextSetBit(0); first >= 0; ) {
+            int end = requested.nextClearBit(first);
+            runs.add(new int[]{first, end - 1});
+            first = requested.nextSetBit(end);
+        }
+
+        for (int gap = 1; ; gap *= 2) {
+            StringBuilder sb = new StringBuilder();
+            for (int[] run : runs) {
+                if (!sb.isEmpty()) sb.append(',');
+                sb.append(run[0]);
+                if (run[1] > run[0]) sb.append('-').append(run[1]);
+            }
+            if (sb.length() <= maxLength) return sb.toString();
+
+            List<int[]> merged = new ArrayList<>();
+            for (int[] run : runs) {
+                int[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (previous != null && run[0] - previous[1] - 1 <= gap) {
+                    requested.set(previous[1] + 1, run[0]);
+                    previous[1] = run[1];
+                } else {
+                    merged.add(run);
+                }
+            }
+            runs = merged;
+        }
+    }
+
+    // shkruan file-in e ri sipas renditjes së blloqeve të serverit: të kërkuarit nga delta, të tjerët nga kopja lokale
+    private static boolean assemble(Path local, long[] found, BitSet requested, Path delta,
+                                    BlockSignatures signatures) throws IOException {
+        Path assembled = local.resolveSibling(local.getFileName() + ".sync");
+        MessageDigest sha256 = BlockSignatures.digest("SHA-256");
+        ByteBuffer block = ByteBuffer.allocate(signatures.blockSize());
+
+        try (FileChannel source = FileChannel.open(local, StandardOpenOption.READ);
+             FileChannel data = requested.isEmpty() ? null : FileChannel.open(delta, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(assembled, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long deltaPosition = 0;
+            for (int i = 0; i < signatures.blockCount(); i++) {
+                int length = signatures.blockLength(i);
+                block.clear().limit(length);
+                if (requested.get(i)) {
+                    readFully(data, block, deltaPosition);
+                    deltaPosition += length;
+                } else {
+                    readFully(source, block, found[i]);
+                }
+                sha256.update(block.flip());
+                block.rewind();
+                long position = (long) i * signatures.blockSize();
+                while (block.hasRemaining()) {
+                    position += out.write(block, position);
+                }
+            }
+        }
+
+        if (!Arrays.equals(sha256.digest(), signatures.fileHash())) {
+            Files.deleteIfExists(assembled);
+            return false;
+        }
+        Files.move(assembled, local, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("Të dhënat e delta-s janë më të shkurtra se sa pritej");
+            }
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+}
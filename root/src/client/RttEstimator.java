@@ -0,0 +1,36 @@
+package client;
+
+// vlerësim i RTT-së sipas RFC 6298: SRTT dhe RTTVAR me pesha 1/8 dhe 1/4, RTO = SRTT + 4·RTTVAR
+public class RttEstimator {
+    private final long minRtoNanos;
+    private final long maxRtoNanos;
+    private long srtt;
+    private long rttvar;
+    private long rto;
+
+    public RttEstimator(long initialRtoMs, long minRtoMs, long maxRtoMs) {
+        this.minRtoNanos = minRtoMs * 1_000_000L;
+        this.maxRtoNanos = maxRtoMs * 1_000_000L;
+        this.rto = initialRtoMs * 1_000_000L;
+    }
+
+    // vetëm për kërkesa që s'janë ridërguar (Karn), përndryshe nuk dihet cilës dërgesë i përket përgjigjja
+    public synchronized void sample(long rttNanos) {
+        if (srtt == 0) {
+            srtt = rttNanos;
+            rttvar = rttNanos / 2;
+        } else {
+            rttvar += (Math.abs(srtt - rttNanos) - rttvar) / 4;
+            srtt += (rttNanos - srtt) / 8;
+        }
+        rto = Math.min(maxRtoNanos, Math.max(minRtoNanos, srtt + 4 * rttvar));
+    }
+
+    public synchronized long rtoNanos(int attempt) {
+        return Math.min(maxRtoNanos, rto << Math.min(attempt, 16));
+    }
+
+    public synchronized long srttNanos() {
+        return srtt;
+    }
+}
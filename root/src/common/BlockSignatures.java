@@ -0,0 +1,144 @@
+package common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// nënshkrimet e blloqeve të një file për sinkronizimin me delta: për çdo bllok një checksum i lëvizshëm
+// (si te rsync) dhe MD5, plus SHA-256 e gjithë file-it që marrësi të verifikojë rezultatin
+public class BlockSignatures {
+    private static final int MAGIC = 0x44534947;
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4 + 32;
+    public static final int STRONG_SIZE = 16;
+    private static final int ENTRY_SIZE = 4 + STRONG_SIZE;
+
+    private final long fileSize;
+    private final int blockSize;
+    private final int[] weak;
+    private final byte[] strong;
+    private final byte[] fileHash;
+
+    private BlockSignatures(long fileSize, int blockSize, int[] weak, byte[] strong, byte[] fileHash) {
+        this.fileSize = fileSize;
+        this.blockSize = blockSize;
+        this.weak = weak;
+        this.strong = strong;
+        this.fileHash = fileHash;
+    }
+
+    // afërsisht rrënja katrore e madhësisë, që numri i blloqeve dhe madhësia e tyre të rriten njëlloj
+    public static int blockSizeFor(long fileSize) {
+        int root = (int) Math.min(1 << 16, Math.sqrt((double) fileSize));
+        return Math.max(2048, Integer.highestOneBit(Math.max(1, root)));
+    }
+
+    public static BlockSignatures compute(FileChannel channel, int blockSize) throws IOException {
+        long size = channel.size();
+        int count = (int) ((size + blockSize - 1) / blockSize);
+        int[] weak = new int[count];
+        byte[] strong = new byte[count * STRONG_SIZE];
+        MessageDigest md5 = digest("MD5");
+        MessageDigest sha256 = digest("SHA-256");
+
+        byte[] block = new byte[blockSize];
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        for (int i = 0; i < count; i++) {
+            long position = (long) i * blockSize;
+            int length = (int) Math.min(blockSize, size - position);
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("File u shkurtua gjatë leximit");
+            }
+            weak[i] = weak(block, 0, length);
+            md5.update(block, 0, length);
+            System.arraycopy(md5.digest(), 0, strong, i * STRONG_SIZE, STRONG_SIZE);
+            sha256.update(block, 0, length);
+        }
+        return new BlockSignatures(size, blockSize, weak, strong, sha256.digest());
+    }
+
+    public static int weak(byte[] data, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int x = data[offset + i] & 0xFF;
+            a += x;
+            b += (length - i) * x;
+        }
+        return (b << 16) | (a & 0xFFFF);
+    }
+
+    public static int weak(ByteBuffer data, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int x = data.get(offset + i) & 0xFF;
+            a += x;
+            b += (length - i) * x;
+        }
+        return (b << 16) | (a & 0xFFFF);
+    }
+
+    // zhvendos dritaren me një byte: del "out", hyn "in"
+    public static int roll(int weak, byte out, byte in, int length) {
+        int a = weak & 0xFFFF;
+        int b = weak >>> 16;
+        a = (a - (out & 0xFF) + (in & 0xFF)) & 0xFFFF;
+        b = (b - length * (out & 0xFF) + a) & 0xFFFF;
+        return (b << 16) | a;
+    }
+
+    public byte[] encode() {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + weak.length * ENTRY_SIZE);
+        out.putInt(MAGIC).putLong(fileSize).putInt(blockSize).putInt(weak.length).put(fileHash);
+        for (int i = 0; i < weak.length; i++) {
+            out.putInt(weak[i]).put(strong, i * STRONG_SIZE, STRONG_SIZE);
+        }
+        return out.array();
+    }
+
+    public static BlockSignatures decode(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) throw new IOException("Nënshkrime të pavlefshme");
+        long fileSize = in.getLong();
+        int blockSize = in.getInt();
+        int count = in.getInt();
+        if (blockSize <= 0 || count < 0 || in.remaining() != 32 + (long) count * ENTRY_SIZE
+                || count != (fileSize + blockSize - 1) / blockSize) {
+            throw new IOException("Nënshkrime të pavlefshme");
+        }
+        byte[] fileHash = new byte[32];
+        in.get(fileHash);
+        int[] weak = new int[count];
+        byte[] strong = new byte[count * STRONG_SIZE];
+        for (int i = 0; i < count; i++) {
+            weak[i] = in.getInt();
+            in.get(strong, i * STRONG_SIZE, STRONG_SIZE);
+        }
+        return new BlockSignatures(fileSize, blockSize, weak, strong, fileHash);
+    }
+
+    public static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long fileSize() { return fileSize; }
+    public int blockSize() { return blockSize; }
+    public int blockCount() { return weak.length; }
+    public int weakAt(int block) { return weak[block]; }
+    public byte[] fileHash() { return fileHash.clone(); }
+
+    public int blockLength(int block) {
+        return (int) Math.min(blockSize, fileSize - (long) block * blockSize);
+    }
+
+    public boolean strongMatches(int block, byte[] digest) {
+        return Arrays.equals(strong, block * STRONG_SIZE, (block + 1) * STRONG_SIZE, digest, 0, STRONG_SIZE);
+    }
+}
@@ -0,0 +1,76 @@
+package common;
+
+import java.util.Arrays;
+
+public enum Command {
+    PING(1, "ping"),
+    LOGIN(2, "/login"),
+    LIST(3, "/list"),
+    READ(4, "/read"),
+    PAGE(5, "/page"),
+    DOWNLOAD(6, "/download"),
+    DELETE(7, "/delete"),
+    UPLOAD_BEGIN(8, "/upload_begin"),
+    UPLOAD_COMMIT(9, "/upload_commit"),
+    SEARCH(10, "/search"),
+    INFO(11, "/info"),
+    STATS(12, "stats"),
+    DELTA_SIG(13, "/delta_sig"),
+    DELTA_GET(14, "/delta_get"),
+    CODECS(15, "/codecs"),
+    FANOUT(16, "/fanout");
+
+    private static final Command[] BY_OPCODE = new Command[256];
+    private static final Command[][] BY_SECOND_CHAR = new Command[128][0];
+
+    static {
+        for (Command command : values()) {
+            BY_OPCODE[command.opcode] = command;
+            int bucket = command.keyword.charAt(1);
+            Command[] commands = Arrays.copyOf(BY_SECOND_CHAR[bucket], BY_SECOND_CHAR[bucket].length + 1);
+            commands[commands.length - 1] = command;
+            BY_SECOND_CHAR[bucket] = commands;
+        }
+    }
+
+    private final int opcode;
+    private final String keyword;
+
+    Command(int opcode, String keyword) {
+        this.opcode = opcode;
+        this.keyword = keyword;
+    }
+
+    public int opcode() {
+        return opcode;
+    }
+
+    public String keyword() {
+        return keyword;
+    }
+
+    public static Command fromOpcode(int opcode) {
+        return BY_OPCODE[opcode & 0xFF];
+    }
+
+    // vetëm fjala e parë e komandës tekst krahasohet, pa marrë parasysh shkronjat e mëdha;
+    // kandidatët ndahen sipas shkronjës së dytë që të mos krahasohen të gjitha fjalët kyçe
+    public static Command fromText(String message) {
+        if (message.length() < 2) return null;
+        int bucket = Character.toLowerCase(message.charAt(1));
+        if (bucket >= BY_SECOND_CHAR.length) return null;
+        for (Command command : BY_SECOND_CHAR[bucket]) {
+            int length = command.keyword.length();
+            if (message.regionMatches(true, 0, command.keyword, 0, length)
+                    && (message.length() == length || message.charAt(length) == ' ')) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    public static String argumentsOf(String message) {
+        int space = message.indexOf(' ');
+        return space < 0 ? "" : message.substring(space + 1).trim();
+    }
+}
@@ -0,0 +1,102 @@
+package common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class CommandFrame {
+    // byte-i i versionit: 0xFD nuk shfaqet në UTF-8, kështu protokolli tekst mbetet i vlefshëm krahas këtij
+    public static final byte VERSION = (byte) 0xFD;
+
+    public static final byte FLAG_RESPONSE = 1;
+
+    public static final int HEADER_SIZE = 8;
+    public static final int MAX_FIELD_LENGTH = 0xFFFF;
+
+    public static boolean isCommand(ByteBuffer frame) {
+        return frame.remaining() >= HEADER_SIZE && frame.get(frame.position()) == VERSION;
+    }
+
+    public static int opcode(ByteBuffer frame) {
+        return frame.get(frame.position() + 1) & 0xFF;
+    }
+
+    public static int requestId(ByteBuffer frame) {
+        return frame.getInt(frame.position() + 2);
+    }
+
+    public static byte flags(ByteBuffer frame) {
+        return frame.get(frame.position() + 6);
+    }
+
+    public static int fieldCount(ByteBuffer frame) {
+        return frame.get(frame.position() + 7) & 0xFF;
+    }
+
+    // fushat bashkohen me hapësirë që trajtuesit e komandave të jenë të njëjtë për të dy protokollet;
+    // kthen null kur gjatësitë e fushave dalin jashtë datagramit
+    public static String arguments(ByteBuffer frame) {
+        int count = fieldCount(frame);
+        int offset = frame.position() + HEADER_SIZE;
+        int end = frame.limit();
+        if (count == 0) return "";
+
+        StringBuilder sb = count > 1 ? new StringBuilder() : null;
+        for (int i = 0; i < count; i++) {
+            if (offset + 2 > end) return null;
+            int length = frame.getShort(offset) & 0xFFFF;
+            offset += 2;
+            if (offset + length > end) return null;
+            String field = text(frame, offset, length);
+            if (sb == null) return field;
+            if (i > 0) sb.append(' ');
+            sb.append(field);
+            offset += length;
+        }
+        return sb.toString();
+    }
+
+    // dekodim direkt nga array-i i buffer-it kur ka një të tillë, pa CharBuffer të ndërmjetëm
+    public static String text(ByteBuffer buffer, int offset, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static ByteBuffer payload(ByteBuffer frame) {
+        return frame.duplicate().position(frame.position() + HEADER_SIZE).slice();
+    }
+
+    public static int encodeRequest(byte[] frame, Command command, int requestId, String[] fields) {
+        writeHeader(frame, command.opcode(), requestId, (byte) 0, fields.length);
+        int offset = HEADER_SIZE;
+        for (String field : fields) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_FIELD_LENGTH || offset + 2 + bytes.length > frame.length) {
+                throw new IllegalArgumentException("Fusha e komandës është shumë e gjatë");
+            }
+            frame[offset] = (byte) (bytes.length >>> 8);
+            frame[offset + 1] = (byte) bytes.length;
+            System.arraycopy(bytes, 0, frame, offset + 2, bytes.length);
+            offset += 2 + bytes.length;
+        }
+        return offset;
+    }
+
+    public static byte[] response(int opcode, int requestId, byte[] body) {
+        byte[] frame = new byte[HEADER_SIZE + body.length];
+        writeHeader(frame, opcode, requestId, FLAG_RESPONSE, 0);
+        System.arraycopy(body, 0, frame, HEADER_SIZE, body.length);
+        return frame;
+    }
+
+    private static void writeHeader(byte[] frame, int opcode, int requestId, byte flags, int fieldCount) {
+        frame[0] = VERSION;
+        frame[1] = (byte) opcode;
+        TransferFrame.writeInt(frame, 2, requestId);
+        frame[6] = flags;
+        frame[7] = (byte) fieldCount;
+    }
+}
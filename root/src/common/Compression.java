@@ -0,0 +1,203 @@
+package common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// kompresim Deflate pa header zlib për chunks dhe përgjigje të mëdha; Deflater/Inflater merren nga pool-e,
+// sepse krijimi i tyre rezervon memorie native dhe do ishte alokim në çdo chunk
+public class Compression {
+    // nën këtë raport (të kompresuar / origjinal) të mostrës kompresimi ia vlen
+    private static final double MAX_SAMPLE_RATIO = 0.9;
+    private static final int POOL_SIZE = 64;
+
+    public enum Codec {
+        NONE("none", 0),
+        DEFLATE("deflate", Deflater.DEFAULT_COMPRESSION),
+        FAST("fast", Deflater.BEST_SPEED);
+
+        private final String keyword;
+        private final int level;
+        private final ArrayBlockingQueue<Deflater> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+        Codec(String keyword, int level) {
+            this.keyword = keyword;
+            this.level = level;
+        }
+
+        public String keyword() {
+            return keyword;
+        }
+
+        // i pari nga lista "deflate,fast" që njihet; NONE kur asnjë
+        public static Codec negotiate(String offered) {
+            for (String name : offered.split("[,\\s]+")) {
+                for (Codec codec : values()) {
+                    if (codec != NONE && codec.keyword.equalsIgnoreCase(name)) return codec;
+                }
+            }
+            return NONE;
+        }
+
+        private Deflater acquire() {
+            Deflater deflater = pool.poll();
+            return deflater != null ? deflater : new Deflater(level, true);
+        }
+
+        private void release(Deflater deflater) {
+            deflater.reset();
+            if (!pool.offer(deflater)) deflater.end();
+        }
+    }
+
+    private static final ArrayBlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private static final LongAdder rawBytes = new LongAdder();
+    private static final LongAdder compressedBytes = new LongAdder();
+    private static final LongAdder storedChunks = new LongAdder();
+    private static final LongAdder skippedTransfers = new LongAdder();
+    private static final LongAdder compressNanos = new LongAdder();
+    private static final LongAdder inflatedBytes = new LongAdder();
+    private static final LongAdder inflateNanos = new LongAdder();
+
+    // kompreson input-in (position..limit) te output nga position e tij; kthen gjatësinë ose -1 kur rezultati
+    // nuk del më i vogël se origjinali, atëherë thirrësi e dërgon chunk-un pa kompresim
+    public static int compress(Codec codec, ByteBuffer input, ByteBuffer output) {
+        int length = input.remaining();
+        if (length == 0) return -1;
+        long start = System.nanoTime();
+        int outputStart = output.position();
+        int outputLimit = output.limit();
+        output.limit(Math.min(outputLimit, outputStart + length - 1));
+
+        Deflater deflater = codec.acquire();
+        int written;
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            while (!deflater.finished() && output.hasRemaining()) {
+                deflater.deflate(output);
+            }
+            written = deflater.finished() ? output.position() - outputStart : -1;
+        } finally {
+            codec.release(deflater);
+            output.limit(outputLimit);
+        }
+
+        compressNanos.add(System.nanoTime() - start);
+        rawBytes.add(length);
+        if (written < 0) {
+            storedChunks.increment();
+            compressedBytes.add(length);
+            output.position(outputStart);
+        } else {
+            compressedBytes.add(written);
+        }
+        return written;
+    }
+
+    public static byte[] compress(Codec codec, byte[] data) {
+        ByteBuffer output = ByteBuffer.allocate(data.length);
+        int length = compress(codec, ByteBuffer.wrap(data), output);
+        return length < 0 ? null : Arrays.copyOf(output.array(), length);
+    }
+
+    // shpalos input-in te output; kthen gjatësinë e shpalosur
+    public static int decompress(ByteBuffer input, ByteBuffer output) throws IOException {
+        long start = System.nanoTime();
+        int outputStart = output.position();
+        Inflater inflater = acquireInflater();
+        try {
+            inflater.setInput(input);
+            while (!inflater.finished()) {
+                if (!output.hasRemaining() || inflater.inflate(output) == 0 && inflater.needsInput()) {
+                    throw new IOException("Të dhëna të kompresuara të pavlefshme");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Të dhëna të kompresuara të pavlefshme: " + e.getMessage());
+        } finally {
+            releaseInflater(inflater);
+        }
+        int length = output.position() - outputStart;
+        inflateNanos.add(System.nanoTime() - start);
+        inflatedBytes.add(length);
+        return length;
+    }
+
+    // për përgjigjet në faqe, madhësia e shpalosur nuk dihet paraprakisht
+    public static byte[] decompress(byte[] data) throws IOException {
+        long start = System.nanoTime();
+        byte[] output = new byte[Math.max(256, data.length * 4)];
+        int length = 0;
+        Inflater inflater = acquireInflater();
+        try {
+            inflater.setInput(data);
+            while (!inflater.finished()) {
+                if (length == output.length) output = Arrays.copyOf(output, output.length * 2);
+                int n = inflater.inflate(output, length, output.length - length);
+                if (n == 0 && inflater.needsInput()) throw new IOException("Të dhëna të kompresuara të pavlefshme");
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Të dhëna të kompresuara të pavlefshme: " + e.getMessage());
+        } finally {
+            releaseInflater(inflater);
+        }
+        inflateNanos.add(System.nanoTime() - start);
+        inflatedBytes.add(length);
+        return Arrays.copyOf(output, length);
+    }
+
+    private static Inflater acquireInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) inflater.end();
+    }
+
+    // mostra kompresohet një herë në fillim të transferimit; të dhënat e kompresuara tashmë (zip, jpg, ...)
+    // dërgohen direkt pa harxhuar CPU për çdo chunk
+    public static boolean worthCompressing(Codec codec, ByteBuffer sample) {
+        int length = sample.remaining();
+        if (codec == Codec.NONE || length == 0) return false;
+        ByteBuffer output = ByteBuffer.allocate(length);
+        long start = System.nanoTime();
+        Deflater deflater = codec.acquire();
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            while (!deflater.finished() && output.hasRemaining()) {
+                deflater.deflate(output);
+            }
+            boolean worth = deflater.finished() && output.position() < length * MAX_SAMPLE_RATIO;
+            if (!worth) skippedTransfers.increment();
+            return worth;
+        } finally {
+            codec.release(deflater);
+            compressNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public static String getStats() {
+        long raw = rawBytes.sum();
+        long compressed = compressedBytes.sum();
+        long inflated = inflatedBytes.sum();
+        return ">> Kompresimi:\n"
+                + String.format(" - Origjinal: %s | Dërguar: %s | Raporti: %.2fx | Chunks pa kompresim: %d"
+                        + " | Transferime të anashkaluara: %d\n",
+                Utils.formatFileSize(raw), Utils.formatFileSize(compressed),
+                compressed > 0 ? (double) raw / compressed : 1.0, storedChunks.sum(), skippedTransfers.sum())
+                + String.format(" - CPU: kompresim %.1f ms (%.0f ns/KB) | shpalosje %.1f ms (%s)\n",
+                compressNanos.sum() / 1e6, raw > 0 ? compressNanos.sum() * 1024.0 / raw : 0.0,
+                inflateNanos.sum() / 1e6, Utils.formatFileSize(inflated));
+    }
+}
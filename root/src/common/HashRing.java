@@ -0,0 +1,65 @@
+package common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// consistent hashing me nyje virtuale: çdo nyje zë vnodes pika në rreth dhe një çelës i përket pikës së parë
+// pas hash-it të tij. Kur shtohet ose hiqet një nyje lëvizin vetëm çelësat e pikave të saj, afërsisht 1/N;
+// pikat e shumta e barazojnë ngarkesën mes nyjeve
+public class HashRing<T> {
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+    private final Set<T> nodes = new LinkedHashSet<>();
+    private final int vnodes;
+
+    public HashRing(int vnodes) {
+        this.vnodes = Math.max(1, vnodes);
+    }
+
+    // pikat varen vetëm nga emri i nyjes (toString), kështu çdo klient me të njëjtën listë ndërton të njëjtin rreth
+    public void add(T node) {
+        if (!nodes.add(node)) return;
+        for (int i = 0; i < vnodes; i++) {
+            ring.putIfAbsent(hash(node + "#" + i), node);
+        }
+    }
+
+    public void remove(T node) {
+        if (!nodes.remove(node)) return;
+        ring.values().removeIf(node::equals);
+    }
+
+    public T owner(String key) {
+        if (ring.isEmpty()) return null;
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public Set<T> nodes() {
+        return nodes;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    static long hash(String key) {
+        MessageDigest md5 = MD5.get();
+        byte[] digest = md5.digest(key.getBytes(StandardCharsets.UTF_8));
+        long h = 0;
+        for (int i = 0; i < 8; i++) h = (h << 8) | (digest[i] & 0xFF);
+        return h;
+    }
+}
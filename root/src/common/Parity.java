@@ -0,0 +1,147 @@
+package common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+// korrigjim gabimesh përpara (FEC) për shkarkimet: pas çdo grupi prej k chunks të rinj të njëpasnjëshëm
+// dërguesi nxjerr një frame PARITY me XOR-in e tyre (të pakompresuar, të mbushur me zero deri në chunkSize).
+// Marrësi që ka k-1 chunks të grupit rindërton të humburin pa pritur ridërgimin, me kosto 1/k në egress
+public class Parity {
+    // payload-i i PARITY: k (2 bajt) dhe pastaj XOR-i
+    public static final int HEADER_SIZE = 2;
+    public static final int MIN_GROUP = 4;
+    public static final int MAX_GROUP = 64;
+    // nën këtë humbje pariteti kushton më shumë se ridërgimet që kursen
+    private static final double MIN_LOSS = 0.002;
+
+    private Parity() {}
+
+    // grupi ku humbja e pritur është rreth gjysmë chunk-u, që shumica e grupeve të kenë më së shumti një
+    // humbje, të cilën pariteti e mbulon; 0 = pa paritet
+    public static int groupSize(double loss) {
+        if (loss < MIN_LOSS) return 0;
+        return (int) Math.max(MIN_GROUP, Math.min(MAX_GROUP, Math.round(0.5 / loss)));
+    }
+
+    // "off" = 0, "auto" = -1, ose madhësi fikse grupi
+    public static int parseMode(String mode) {
+        if (mode.equalsIgnoreCase("auto")) return -1;
+        if (mode.equalsIgnoreCase("off")) return 0;
+        try {
+            return Math.max(0, Math.min(MAX_GROUP, Integer.parseInt(mode.trim())));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // target[i] ^= source[i] për length bajt, me indekse absolute
+    public static void xor(ByteBuffer target, int targetOffset, ByteBuffer source, int sourceOffset, int length) {
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            target.putLong(targetOffset + i, target.getLong(targetOffset + i) ^ source.getLong(sourceOffset + i));
+        }
+        for (; i < length; i++) {
+            target.put(targetOffset + i, (byte) (target.get(targetOffset + i) ^ source.get(sourceOffset + i)));
+        }
+    }
+
+    // ana e marrësit: chunks e tjerë të grupit lexohen nga file-i i pjesshëm, kështu nuk mbahet kopje e tyre
+    // në memorie; paritetet që presin më shumë se një mungesë mbahen derisa grupi të mbyllet
+    public static class Decoder {
+        private static final int MAX_PENDING = 1024;
+
+        private final FileChannel channel;
+        private final long size;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final ByteBuffer scratch;
+        private final TreeMap<Integer, Group> pending = new TreeMap<>();
+
+        public Decoder(FileChannel channel, long size, int chunkSize, int chunkCount) {
+            this.channel = channel;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = chunkCount;
+            this.scratch = ByteBuffer.allocate(chunkSize);
+        }
+
+        // frame PARITY me CRC të verifikuar; kthen seq e rindërtuar ose -1
+        public int onParity(ByteBuffer frame, ReceiveWindow received) throws IOException {
+            int first = TransferFrame.sequence(frame);
+            ByteBuffer payload = TransferFrame.payload(frame);
+            if (payload.remaining() < HEADER_SIZE || first < 0 || first >= chunkCount) return -1;
+            int k = payload.getShort(0) & 0xFFFF;
+            int length = payload.remaining() - HEADER_SIZE;
+            if (k < 2 || length > chunkSize) return -1;
+
+            prune(received.cumulative());
+            if (first + k <= received.cumulative()) return -1;
+            ByteBuffer xor = ByteBuffer.allocate(chunkSize);
+            xor.put(0, payload, HEADER_SIZE, length);
+            pending.put(first, new Group(k, xor));
+            if (pending.size() > MAX_PENDING) pending.pollFirstEntry();
+            return recover(first, received);
+        }
+
+        // pas çdo chunk-u të shkruar: nëse grupi i tij ka tani vetëm një mungesë, rindërtohet
+        public int onData(int seq, ReceiveWindow received) throws IOException {
+            if (pending.isEmpty()) return -1;
+            Map.Entry<Integer, Group> entry = pending.floorEntry(seq);
+            if (entry == null || seq >= entry.getKey() + entry.getValue().k) return -1;
+            return recover(entry.getKey(), received);
+        }
+
+        private int recover(int first, ReceiveWindow received) throws IOException {
+            Group group = pending.get(first);
+            int end = Math.min(first + group.k, chunkCount);
+            int missing = -1;
+            for (int seq = first; seq < end; seq++) {
+                if (received.isReceived(seq)) continue;
+                if (missing >= 0) return -1;
+                missing = seq;
+            }
+            pending.remove(first);
+            if (missing < 0) return -1;
+
+            for (int seq = first; seq < end; seq++) {
+                if (seq == missing) continue;
+                int length = length(seq);
+                read(scratch.clear().limit(length), (long) seq * chunkSize);
+                xor(group.xor, 0, scratch, 0, length);
+            }
+            int length = length(missing);
+            ByteBuffer rebuilt = group.xor.clear().limit(length);
+            long position = (long) missing * chunkSize;
+            while (rebuilt.hasRemaining()) {
+                position += channel.write(rebuilt, position);
+            }
+            received.markRecovered(missing);
+            return missing;
+        }
+
+        private void prune(int cumulative) {
+            while (!pending.isEmpty()) {
+                Map.Entry<Integer, Group> first = pending.firstEntry();
+                if (first.getKey() + first.getValue().k > cumulative) return;
+                pending.pollFirstEntry();
+            }
+        }
+
+        private int length(int seq) {
+            return (int) Math.min(chunkSize, size - (long) seq * chunkSize);
+        }
+
+        private void read(ByteBuffer target, long position) throws IOException {
+            while (target.hasRemaining()) {
+                int n = channel.read(target, position);
+                if (n < 0) throw new IOException("File-i i pjesshëm është më i shkurtër se chunks e marrë");
+                position += n;
+            }
+        }
+
+        private record Group(int k, ByteBuffer xor) {}
+    }
+}
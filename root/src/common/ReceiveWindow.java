@@ -0,0 +1,73 @@
+package common;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class ReceiveWindow {
+    private final int chunkCount;
+    private final BitSet received;
+    private final long[] bitmap;
+    private int cumulative;
+    private int recovered;
+
+    public ReceiveWindow(int chunkCount, int window) {
+        this.chunkCount = chunkCount;
+        this.received = new BitSet(chunkCount);
+        this.bitmap = new long[ackWords(window)];
+    }
+
+    public static int ackWords(int window) {
+        return Math.min((window + 63) / 64, TransferFrame.MAX_ACK_WORDS);
+    }
+
+    // ACK-u dërgohet të paktën çdo 8 chunks, që dërguesi me dritare mbingarkese të vogël të mos presë timeout-in
+    public static int ackEvery(int window) {
+        return Math.max(1, Math.min(window / 8, 8));
+    }
+
+    // plus numëruesi i chunks të rindërtuar nga pariteti
+    public static int ackFrameSize(int window) {
+        return TransferFrame.ackSize(ackWords(window)) + 4;
+    }
+
+    public boolean isReceived(int seq) {
+        return received.get(seq);
+    }
+
+    public void markReceived(int seq) {
+        received.set(seq);
+        while (cumulative < chunkCount && received.get(cumulative)) cumulative++;
+    }
+
+    // chunk-u u rindërtua nga pariteti; numëruesi i tregon dërguesit humbjen që nuk pa
+    public void markRecovered(int seq) {
+        markReceived(seq);
+        recovered++;
+    }
+
+    public int recovered() {
+        return recovered;
+    }
+
+    public int cumulative() {
+        return cumulative;
+    }
+
+    public int receivedCount() {
+        return received.cardinality();
+    }
+
+    public boolean isComplete() {
+        return cumulative >= chunkCount;
+    }
+
+    public int writeAck(byte[] frame, int transferId) {
+        Arrays.fill(bitmap, 0L);
+        for (int seq = received.nextSetBit(cumulative + 1); seq >= 0; seq = received.nextSetBit(seq + 1)) {
+            int bit = seq - cumulative - 1;
+            if (bit >= bitmap.length * 64) break;
+            bitmap[bit >>> 6] |= 1L << (bit & 63);
+        }
+        return TransferFrame.writeAck(frame, transferId, cumulative, bitmap, bitmap.length, recovered);
+    }
+}
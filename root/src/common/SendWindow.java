@@ -0,0 +1,135 @@
+package common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+public abstract class SendWindow {
+    protected final int chunkCount;
+    protected final int window;
+    private final BitSet acked = new BitSet();
+    private final long[] sentAt;
+    private int base;
+    private int next;
+    private int sacked;
+
+    protected SendWindow(int chunkCount, int window, int start) {
+        this.chunkCount = chunkCount;
+        this.window = window;
+        this.sentAt = new long[window];
+        this.base = start;
+        this.next = start;
+        if (start > 0) acked.set(0, start);
+    }
+
+    protected abstract void sendChunk(int seq) throws IOException;
+
+    // nënklasat me kufi shpejtësie ose kontroll të mbingarkesës e ndalin mbushjen e dritares;
+    // ridërgimet nuk ndalen
+    protected boolean canSendNew() {
+        return true;
+    }
+
+    // sinjalet për kontrollin e mbingarkesës: ACK që e shtyn bazën, vrima të raportuara, skadime
+    protected void onAdvance(int acked) {}
+
+    protected void onLoss() {}
+
+    protected void onTimeout() {}
+
+    // vrima që pritet të mbushet pa ridërgim (p.sh. nga pariteti te marrësi) nuk trajtohet ende si NACK;
+    // skadimi i RETRANSMIT_MS e ridërgon gjithsesi
+    protected boolean deferLoss(int seq, long now) {
+        return false;
+    }
+
+    protected long sentAt(int seq) {
+        return sentAt[seq % window];
+    }
+
+    public boolean onAck(ByteBuffer frame, long now, long guardMs) throws IOException {
+        int previousBase = base;
+        int cumulative = TransferFrame.ackCumulative(frame);
+        // ACK i pavlefshëm (negativ ose përtej chunks të dërguar) injorohet
+        if (cumulative < 0 || cumulative > next) return false;
+        if (cumulative > base) {
+            for (int seq = acked.nextSetBit(base); seq >= 0 && seq < cumulative; seq = acked.nextSetBit(seq + 1)) {
+                sacked--;
+            }
+            acked.set(base, cumulative);
+            base = cumulative;
+        }
+
+        // bitat e ndezur janë ACK selektiv, vrimat nën ACK-un më të lartë trajtohen si NACK
+        int highest = -1;
+        int words = TransferFrame.ackWords(frame);
+        for (int w = 0; w < words; w++) {
+            long bits = TransferFrame.ackWord(frame, w);
+            while (bits != 0) {
+                int seq = cumulative + 1 + w * 64 + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (seq >= 0 && seq < next) {
+                    if (!acked.get(seq)) sacked++;
+                    acked.set(seq);
+                    highest = seq;
+                }
+            }
+        }
+        while (base < chunkCount && acked.get(base)) {
+            base++;
+            sacked--;
+        }
+        if (base > previousBase) onAdvance(base - previousBase);
+        if (isComplete()) return true;
+
+        boolean lost = false;
+        for (int seq = acked.nextClearBit(base); seq < highest; seq = acked.nextClearBit(seq + 1)) {
+            if (now - sentAt[seq % window] >= guardMs && !deferLoss(seq, now)) {
+                send(seq, now);
+                lost = true;
+            }
+        }
+        if (lost) onLoss();
+        fill(now);
+        return false;
+    }
+
+    public void fill(long now) throws IOException {
+        while (next < chunkCount && next < base + window && canSendNew()) {
+            send(next++, now);
+        }
+    }
+
+    public void retransmitExpired(long now, long timeoutMs) throws IOException {
+        boolean expired = false;
+        for (int seq = acked.nextClearBit(base); seq < next; seq = acked.nextClearBit(seq + 1)) {
+            if (now - sentAt[seq % window] >= timeoutMs) {
+                send(seq, now);
+                expired = true;
+            }
+        }
+        if (expired) onTimeout();
+    }
+
+    public boolean isComplete() {
+        return base >= chunkCount;
+    }
+
+    public int base() {
+        return base;
+    }
+
+    public int next() {
+        return next;
+    }
+
+    // chunks të dërguar që ende nuk janë konfirmuar as kumulativisht as selektivisht
+    public int inFlight() {
+        return next - base - sacked;
+    }
+
+    private void send(int seq, long now) throws IOException {
+        sendChunk(seq);
+        sentAt[seq % window] = now;
+    }
+}
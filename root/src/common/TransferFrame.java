@@ -0,0 +1,159 @@
+package common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+public class TransferFrame {
+    // 0xFE nuk shfaqet kurrë në UTF-8, prandaj nuk ngatërrohet me komandat tekst
+    public static final byte MAGIC = (byte) 0xFE;
+
+    public static final byte DATA = 1;
+    public static final byte ACK = 2;
+    public static final byte UPLOAD = 3;
+    // XOR i një grupi chunks DATA, seq = chunk-u i parë i grupit (shih Parity)
+    public static final byte PARITY = 4;
+    // bit në bajtin e tipit: payload-i i DATA/UPLOAD është i kompresuar me Deflate
+    public static final byte COMPRESSED = 0x40;
+
+    // DATA/UPLOAD: magic, tipi, id, seq dhe CRC32C e payload-it ashtu siç shkon në rrjet
+    public static final int DATA_HEADER_SIZE = 14;
+    public static final int ACK_HEADER_SIZE = 11;
+    private static final int MIN_FRAME_SIZE = 10;
+    private static final int CHECKSUM_OFFSET = 10;
+    private static final ThreadLocal<CRC32C> CRC = ThreadLocal.withInitial(CRC32C::new);
+    public static final int MAX_ACK_WORDS = 255;
+
+    public static boolean isFrame(ByteBuffer frame) {
+        return frame.remaining() >= MIN_FRAME_SIZE && frame.get(frame.position()) == MAGIC;
+    }
+
+    public static byte type(ByteBuffer frame) {
+        return (byte) (frame.get(frame.position() + 1) & ~COMPRESSED);
+    }
+
+    public static boolean isCompressed(ByteBuffer frame) {
+        return (frame.get(frame.position() + 1) & COMPRESSED) != 0;
+    }
+
+    public static int transferId(ByteBuffer frame) {
+        return frame.getInt(frame.position() + 2);
+    }
+
+    public static int sequence(ByteBuffer frame) {
+        return frame.getInt(frame.position() + 6);
+    }
+
+    public static ByteBuffer payload(ByteBuffer frame) {
+        return frame.duplicate().position(frame.position() + DATA_HEADER_SIZE).slice();
+    }
+
+    // të dhënat e chunk-ut, të shpalosura në scratch kur janë të kompresuara; null kur nuk janë saktësisht
+    // expected bajte, atëherë chunk-u nuk shkruhet dhe SACK-u e kërkon përsëri
+    public static ByteBuffer chunkData(ByteBuffer frame, ByteBuffer scratch, int expected) {
+        ByteBuffer chunk = payload(frame);
+        if (isCompressed(frame)) {
+            try {
+                if (Compression.decompress(chunk, scratch.clear()) != expected) return null;
+            } catch (IOException e) {
+                return null;
+            }
+            return scratch.flip();
+        }
+        return chunk.remaining() == expected ? chunk : null;
+    }
+
+    // thirret pasi payload-i është në vend, frame fillon në indeksin 0
+    public static void writeChecksum(ByteBuffer frame, int payloadLength) {
+        CRC32C crc = CRC.get();
+        crc.reset();
+        crc.update(frame.duplicate().limit(DATA_HEADER_SIZE + payloadLength).position(DATA_HEADER_SIZE));
+        frame.putInt(CHECKSUM_OFFSET, (int) crc.getValue());
+    }
+
+    public static void writeChecksum(byte[] frame, int payloadLength) {
+        CRC32C crc = CRC.get();
+        crc.reset();
+        crc.update(frame, DATA_HEADER_SIZE, payloadLength);
+        writeInt(frame, CHECKSUM_OFFSET, (int) crc.getValue());
+    }
+
+    public static boolean checksumMatches(ByteBuffer frame) {
+        if (frame.remaining() < DATA_HEADER_SIZE) return false;
+        CRC32C crc = CRC.get();
+        crc.reset();
+        crc.update(payload(frame));
+        return (int) crc.getValue() == frame.getInt(frame.position() + CHECKSUM_OFFSET);
+    }
+
+    public static void writeHeader(byte[] frame, int offset, byte type, int transferId, int sequence) {
+        frame[offset] = MAGIC;
+        frame[offset + 1] = type;
+        writeInt(frame, offset + 2, transferId);
+        writeInt(frame, offset + 6, sequence);
+    }
+
+    public static void writeHeader(ByteBuffer frame, byte type, int transferId, int sequence) {
+        frame.put(0, MAGIC);
+        frame.put(1, type);
+        frame.putInt(2, transferId);
+        frame.putInt(6, sequence);
+    }
+
+    public static int ackSize(int words) {
+        return ACK_HEADER_SIZE + words * 8;
+    }
+
+    public static int writeAck(byte[] frame, int transferId, int cumulative, long[] bitmap, int words) {
+        return writeAck(frame, transferId, cumulative, bitmap, words, -1);
+    }
+
+    // recovered >= 0 shtohet pas bitmap-it: chunks që marrësi i rindërtoi nga pariteti. Marrësit e vjetër e
+    // injorojnë, sepse numri i fjalëve të bitmap-it është i shprehur në header
+    public static int writeAck(byte[] frame, int transferId, int cumulative, long[] bitmap, int words, int recovered) {
+        frame[0] = MAGIC;
+        frame[1] = ACK;
+        writeInt(frame, 2, transferId);
+        writeInt(frame, 6, cumulative);
+        frame[10] = (byte) words;
+        for (int i = 0; i < words; i++) {
+            writeLong(frame, ACK_HEADER_SIZE + i * 8, bitmap[i]);
+        }
+        if (recovered < 0) return ackSize(words);
+        writeInt(frame, ackSize(words), recovered);
+        return ackSize(words) + 4;
+    }
+
+    public static int ackCumulative(ByteBuffer frame) {
+        return frame.getInt(frame.position() + 6);
+    }
+
+    public static int ackWords(ByteBuffer frame) {
+        if (frame.remaining() < ACK_HEADER_SIZE) return 0;
+        int words = frame.get(frame.position() + 10) & 0xFF;
+        return Math.min(words, (frame.remaining() - ACK_HEADER_SIZE) / 8);
+    }
+
+    public static long ackWord(ByteBuffer frame, int index) {
+        return frame.getLong(frame.position() + ACK_HEADER_SIZE + index * 8);
+    }
+
+    // -1 kur ACK-u nuk e ka fushën
+    public static int ackRecovered(ByteBuffer frame) {
+        int offset = ackSize(ackWords(frame));
+        if (frame.remaining() < offset + 4) return -1;
+        return frame.getInt(frame.position() + offset);
+    }
+
+    public static void writeInt(byte[] b, int i, int v) {
+        b[i] = (byte) (v >>> 24);
+        b[i + 1] = (byte) (v >>> 16);
+        b[i + 2] = (byte) (v >>> 8);
+        b[i + 3] = (byte) v;
+    }
+
+    public static void writeLong(byte[] b, int i, long v) {
+        writeInt(b, i, (int) (v >>> 32));
+        writeInt(b, i + 4, (int) v);
+    }
+}
@@ -1,7 +1,14 @@
 package common;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HexFormat;
 
 public class Utils {
 
@@ -16,4 +23,25 @@ public class Utils {
         else return String.format("%.2f MB", bytes / (1024.0 * 1024.0));
     }
 
+    // SHA-256 e file-it si hex me shkronja të vogla
+    public static String sha256(Path path) throws IOException {
+        MessageDigest digest = BlockSignatures.digest("SHA-256");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // sa file-i, deri në 1 MB: indeksimi i shumë file-ve të vegjël nuk paguan një buffer të madh për secilin
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(1 << 20, channel.size())));
+            while (channel.read(buffer.clear()) >= 0) {
+                digest.update(buffer.flip());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static boolean isSha256(String value) {
+        if (value.length() != 64) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,294 @@
+package server;
+
+import common.Utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// ruajtje sipas përmbajtjes nën BASE_DIR/.blobs/<2 shkronjat e para>/<sha256>. Një upload ruhet vetëm si blob
+// (vetëm për lexim) dhe emri i tij jeton në manifest si emër → digest; emrat me përmbajtje të njëjtë ndajnë
+// blob-in, por asnjë emër nuk ndan inode me një tjetër. File-t e zakonshëm në BASE_DIR, të vendosur jashtë
+// serverit, mbeten ashtu: për ta manifesti mban vetëm digest-in, madhësinë dhe kohën e modifikimit, dhe një
+// emër që ka ndryshuar rillogaritet herën e parë që kërkohet. File-i i zakonshëm ka përparësi mbi emrin në blob.
+// Manifesti është ditar: çdo ndryshim shtohet si rresht dhe rishkruhet i tëri vetëm kur shumica e rreshtave
+// janë të vjetruar
+public class BlobStore {
+    private static final String STORED = "B";
+    private static final String PLAIN = "F";
+    private static final String REMOVED = "-";
+    private static final int COMPACT_SLACK = 1024;
+    private static final int SCAN_FLUSH_EVERY = 1024;
+
+    private final Path baseDir;
+    private final Path blobDir;
+    private final Path manifest;
+    // emër → digest për emrat që shërbehen nga blob-i
+    private final HashMap<String, String> stored = new HashMap<>();
+    // digest → numri i emrave në stored që e përdorin
+    private final HashMap<String, Integer> refs = new HashMap<>();
+    // emër → digest i llogaritur për file-t e zakonshëm
+    private final HashMap<String, Entry> plain = new HashMap<>();
+    private BufferedWriter journal;
+    private int journalLines;
+    private long dedupedBytes;
+
+    public BlobStore(Path baseDir) throws IOException {
+        this.baseDir = baseDir;
+        this.blobDir = baseDir.resolve(".blobs");
+        this.manifest = blobDir.resolve("manifest");
+        Files.createDirectories(blobDir);
+        load();
+        if (needsCompaction()) {
+            compact();
+        } else {
+            openJournal();
+        }
+    }
+
+    // blob-i i një emri të ruajtur nga upload-i; null kur emri nuk është në ruajtje
+    public synchronized Path blobFor(String name) {
+        String digest = stored.get(name);
+        return digest != null ? blobPath(digest) : null;
+    }
+
+    public synchronized List<String> storedNames() {
+        return new ArrayList<>(stored.keySet());
+    }
+
+    // digest-i i njohur pa lexuar file-in; null kur file nuk është indeksuar ose ka ndryshuar
+    public String knownDigest(Path file) {
+        if (file.startsWith(blobDir)) return file.getFileName().toString();
+        String name = file.getFileName().toString();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            synchronized (this) {
+                Entry entry = plain.get(name);
+                return entry != null && entry.matches(attrs) ? entry.digest : null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public String digest(Path file) throws IOException {
+        String known = knownDigest(file);
+        return known != null ? known : ingest(file, true);
+    }
+
+    // llogarit digest-in e një file-i të zakonshëm; file-i nuk preket, vetëm regjistrohet në manifest
+    private String ingest(Path file, boolean flush) throws IOException {
+        String name = file.getFileName().toString();
+        BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+        String digest = Utils.sha256(file);
+
+        synchronized (this) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attrs.size() != before.size() || attrs.lastModifiedTime().toMillis() != before.lastModifiedTime().toMillis()) {
+                throw new IOException("File " + name + " ndryshoi gjatë llogaritjes së SHA-256");
+            }
+            Entry entry = new Entry(digest, attrs.size(), attrs.lastModifiedTime().toMillis());
+            plain.put(name, entry);
+            // file-i i zakonshëm e zë emrin, blob-i i mëparshëm i tij lirohet
+            release(stored.remove(name));
+            log(PLAIN + "\t" + digest + "\t" + entry.size + "\t" + entry.modified + "\t" + name);
+            if (flush) flush();
+        }
+        return digest;
+    }
+
+    // file i plotë dhe i verifikuar nga upload-i: bëhet blob (ose hidhet kur blob-i ekziston) dhe emri
+    // i lidhet; një file i zakonshëm me të njëjtin emër zëvendësohet
+    public synchronized void commit(Path partial, String name, String digest) throws IOException {
+        Path blob = blobPath(digest);
+        long size = Files.size(partial);
+
+        if (Files.isRegularFile(blob) && Files.size(blob) == size) {
+            Files.delete(partial);
+            dedupedBytes += size;
+        } else {
+            Files.createDirectories(blob.getParent());
+            Files.move(partial, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            blob.toFile().setReadOnly();
+        }
+
+        String previous = stored.put(name, digest);
+        refs.merge(digest, 1, Integer::sum);
+        release(previous);
+        plain.remove(name);
+        log(STORED + "\t" + digest + "\t" + name);
+        flush();
+        Files.deleteIfExists(baseDir.resolve(name));
+    }
+
+    // true kur emri ishte në ruajtje dhe u hoq
+    public synchronized boolean removed(String name) throws IOException {
+        String digest = stored.remove(name);
+        if (digest == null && plain.remove(name) == null) return false;
+        release(digest);
+        log(REMOVED + "\t" + name);
+        flush();
+        return digest != null;
+    }
+
+    // indeksimi i file-ve që nuk janë në manifest, në sfond që nisja e serverit të mos presë hash-et; manifesti
+    // shkruhet në grupe, pastaj fshihen blob-et pa asnjë emër (p.sh. nga një ndërprerje mes zhvendosjes dhe ditarit)
+    public void scanAsync() {
+        Thread t = new Thread(() -> {
+            int pending = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(baseDir)) {
+                for (Path file : stream) {
+                    if (!Files.isRegularFile(file) || knownDigest(file) != null) continue;
+                    try {
+                        ingest(file, false);
+                        if (++pending >= SCAN_FLUSH_EVERY) {
+                            flushScan();
+                            pending = 0;
+                        }
+                    } catch (IOException e) {
+                        System.err.println("Gabim gjatë indeksimit të " + file.getFileName() + ": " + e.getMessage());
+                    }
+                }
+                flushScan();
+                sweep();
+            } catch (IOException e) {
+                System.err.println("Gabim gjatë skanimit të blob-eve: " + e.getMessage());
+            }
+        }, "blob-scan");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public synchronized String getStats() {
+        return " - Ruajtja sipas përmbajtjes: " + stored.size() + " emra në " + refs.size() + " blob-e, "
+                + plain.size() + " file të zakonshëm të indeksuar"
+                + " | Kursyer nga deduplikimi: " + Utils.formatFileSize(dedupedBytes) + "\n";
+    }
+
+    private Path blobPath(String digest) {
+        return blobDir.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    // blob-i fshihet kur asnjë emër nuk i referohet më
+    private void release(String digest) throws IOException {
+        if (digest == null) return;
+        Integer count = refs.get(digest);
+        if (count == null) return;
+        if (count > 1) {
+            refs.put(digest, count - 1);
+            return;
+        }
+        refs.remove(digest);
+        Path blob = blobPath(digest);
+        blob.toFile().setWritable(true);
+        Files.deleteIfExists(blob);
+    }
+
+    private void sweep() throws IOException {
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(blobDir, Files::isDirectory)) {
+            for (Path prefix : prefixes) {
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(prefix)) {
+                    for (Path blob : blobs) {
+                        synchronized (this) {
+                            if (refs.containsKey(blob.getFileName().toString())) continue;
+                            blob.toFile().setWritable(true);
+                            Files.deleteIfExists(blob);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(manifest)) return;
+        try (BufferedReader in = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                journalLines++;
+                String[] fields = line.split("\t", 5);
+                try {
+                    if (fields[0].equals(STORED) && fields.length == 3 && Utils.isSha256(fields[1])) {
+                        stored.put(fields[2], fields[1].toLowerCase(Locale.ROOT));
+                        plain.remove(fields[2]);
+                    } else if (fields[0].equals(PLAIN) && fields.length == 5 && Utils.isSha256(fields[1])) {
+                        plain.put(fields[4], new Entry(fields[1].toLowerCase(Locale.ROOT),
+                                Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+                        stored.remove(fields[4]);
+                    } else if (fields[0].equals(REMOVED) && fields.length == 2) {
+                        stored.remove(fields[1]);
+                        plain.remove(fields[1]);
+                    }
+                } catch (NumberFormatException e) {
+                    // rresht i dëmtuar, emri do rillogaritet
+                }
+            }
+        }
+        for (String digest : stored.values()) refs.merge(digest, 1, Integer::sum);
+    }
+
+    private void openJournal() throws IOException {
+        journal = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void log(String line) throws IOException {
+        journal.write(line);
+        journal.newLine();
+        journalLines++;
+    }
+
+    private synchronized void flushScan() throws IOException {
+        flush();
+    }
+
+    private void flush() throws IOException {
+        if (needsCompaction()) {
+            compact();
+        } else {
+            journal.flush();
+        }
+    }
+
+    private boolean needsCompaction() {
+        return journalLines > 2 * (stored.size() + plain.size()) + COMPACT_SLACK;
+    }
+
+    // gjendja e tanishme shkruhet në file të përkohshëm dhe zëvendëson ditarin me një lëvizje atomike
+    private void compact() throws IOException {
+        if (journal != null) journal.close();
+        Path temp = blobDir.resolve("manifest.tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> e : stored.entrySet()) {
+                out.write(STORED + "\t" + e.getValue() + "\t" + e.getKey());
+                out.newLine();
+            }
+            for (Map.Entry<String, Entry> e : plain.entrySet()) {
+                Entry entry = e.getValue();
+                out.write(PLAIN + "\t" + entry.digest + "\t" + entry.size + "\t" + entry.modified + "\t" + e.getKey());
+                out.newLine();
+            }
+        }
+        Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        journalLines = stored.size() + plain.size();
+        openJournal();
+    }
+
+    private record Entry(String digest, long size, long modified) {
+        boolean matches(BasicFileAttributes attrs) {
+            return attrs.size() == size && attrs.lastModifiedTime().toMillis() == modified;
+        }
+    }
+}
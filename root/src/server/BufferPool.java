@@ -0,0 +1,34 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BufferPool {
+    private final ArrayBlockingQueue<ByteBuffer> free;
+    private final int bufferSize;
+    private final AtomicLong allocated = new AtomicLong();
+
+    public BufferPool(int capacity, int bufferSize) {
+        this.free = new ArrayBlockingQueue<>(capacity);
+        this.bufferSize = bufferSize;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer.clear();
+    }
+
+    // kur pool-i është plot buffer-i i tepërt i lihet GC-së
+    public void release(ByteBuffer buffer) {
+        free.offer(buffer);
+    }
+
+    public long allocatedCount() {
+        return allocated.get();
+    }
+}
@@ -0,0 +1,92 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public interface ChunkSource {
+
+    long size();
+
+    // kopjon [position, position + length) te target duke filluar nga targetIndex; pozicioni dhe limiti i target mund të ndryshojnë
+    void copyTo(ByteBuffer target, int targetIndex, long position, int length) throws IOException;
+
+    default void close() {
+    }
+
+    static ChunkSource of(FileChannel channel) throws IOException {
+        long size = channel.size();
+        return new ChunkSource() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public void copyTo(ByteBuffer target, int targetIndex, long position, int length) throws IOException {
+                target.limit(targetIndex + length).position(targetIndex);
+                while (target.hasRemaining()) {
+                    if (channel.read(target, position + target.position() - targetIndex) < 0) break;
+                }
+            }
+
+            @Override
+            public void close() {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Gabim gjatë mbylljes së file: " + e.getMessage());
+                }
+            }
+        };
+    }
+
+    static ChunkSource of(byte[] data) {
+        return new ChunkSource() {
+            @Override
+            public long size() {
+                return data.length;
+            }
+
+            @Override
+            public void copyTo(ByteBuffer target, int targetIndex, long position, int length) {
+                target.put(targetIndex, data, (int) position, length);
+            }
+        };
+    }
+
+    // pjesët [offsets[i], offsets[i] + lengths[i]) të source, njëra pas tjetrës si një burim i vetëm
+    static ChunkSource ranges(ChunkSource source, long[] offsets, long[] lengths) {
+        long[] starts = new long[offsets.length + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            starts[i + 1] = starts[i] + lengths[i];
+        }
+        return new ChunkSource() {
+            @Override
+            public long size() {
+                return starts[offsets.length];
+            }
+
+            @Override
+            public void copyTo(ByteBuffer target, int targetIndex, long position, int length) throws IOException {
+                int i = Arrays.binarySearch(starts, position);
+                if (i < 0) i = -i - 2;
+                while (length > 0) {
+                    while (starts[i + 1] <= position) i++;
+                    long within = position - starts[i];
+                    int n = (int) Math.min(length, lengths[i] - within);
+                    source.copyTo(target, targetIndex, offsets[i] + within, n);
+                    targetIndex += n;
+                    position += n;
+                    length -= n;
+                }
+            }
+
+            @Override
+            public void close() {
+                source.close();
+            }
+        };
+    }
+}
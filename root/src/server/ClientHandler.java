@@ -1,33 +1,60 @@
 package server;
 
+         import common.Compression;
          import common.Role;
          import java.net.InetAddress;
+         import java.net.InetSocketAddress;
 
 public class ClientHandler {
     private final String clientKey;
     private final InetAddress address;
+    private final int port;
+    private final InetSocketAddress socketAddress;
+    private final TrafficMonitor.ClientTraffic traffic = new TrafficMonitor.ClientTraffic();
+    private final TokenBucket requestBucket;
+    private final TokenBucket byteBucket;
     private Role role;
-    private long lastActive;
+    private volatile Compression.Codec codec = Compression.Codec.NONE;
+    private volatile long lastActive;
 
     public ClientHandler(InetAddress address, int port) {
         this.address = address;
+        this.port = port;
+        this.socketAddress = new InetSocketAddress(address, port);
         this.clientKey = address.getHostAddress() + ":" + port;
         this.role = Role.GUEST;
-        this.lastActive = System.currentTimeMillis();
+        this.lastActive = CoarseClock.millis();
+        long rps = ServerConfig.CLIENT_REQUESTS_PER_SEC;
+        long bps = ServerConfig.CLIENT_BYTES_PER_SEC;
+        this.requestBucket = rps > 0 ? new TokenBucket(rps, rps) : null;
+        this.byteBucket = bps > 0 ? new TokenBucket(bps, RateLimits.byteBurst(bps)) : null;
     }
 
+    // shkruan vetëm kur ora e përafërt ka ecur, që paketat e njëpasnjëshme të mos ndotin cache line-in
     public void updateActivity() {
-        this.lastActive = System.currentTimeMillis();
+        long now = CoarseClock.millis();
+        if (lastActive != now) lastActive = now;
     }
 
     public boolean isTimedOut() {
-        return (System.currentTimeMillis() - lastActive) > ServerConfig.TIMEOUT_MS;
+        return CoarseClock.millis() >= expiresAt();
+    }
+
+    public long expiresAt() {
+        return lastActive + ServerConfig.TIMEOUT_MS;
     }
 
     public void promoteToAdmin() { this.role = Role.ADMIN; }
+    public void setCodec(Compression.Codec codec) { this.codec = codec; }
 
     public String getClientKey() { return clientKey; }
     public InetAddress getAddress() { return address; }
+    public int getPort() { return port; }
+    public InetSocketAddress getSocketAddress() { return socketAddress; }
+    public TrafficMonitor.ClientTraffic getTraffic() { return traffic; }
+    public TokenBucket getRequestBucket() { return requestBucket; }
+    public TokenBucket getByteBucket() { return byteBucket; }
+    public Compression.Codec getCodec() { return codec; }
 
     public boolean isAdmin() { return role == Role.ADMIN; }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package server;
+
+import java.util.concurrent.locks.LockSupport;
+
+// ora e përafërt: një thread e rifreskon çdo RESOLUTION_MS, kështu paketat nuk thërrasin currentTimeMillis
+public final class CoarseClock {
+    public static final int RESOLUTION_MS = 10;
+
+    private static volatile long now = System.currentTimeMillis();
+
+    static {
+        Thread ticker = new Thread(() -> {
+            while (true) {
+                LockSupport.parkNanos(RESOLUTION_MS * 1_000_000L);
+                now = System.currentTimeMillis();
+            }
+        }, "coarse-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private CoarseClock() {}
+
+    public static long millis() {
+        return now;
+    }
+}
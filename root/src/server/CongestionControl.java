@@ -0,0 +1,59 @@
+package server;
+
+// AIMD për një transferim, në njësi chunks: slow start deri te ssthresh, pastaj +1 chunk për çdo
+// dritare të konfirmuar; një vrimë e raportuar e përgjysmon dritaren, një skadim e kthen në minimum.
+// Humbjet brenda të njëjtës dritare (para se baza të kalojë pikën e rikuperimit) numërohen një herë.
+public class CongestionControl {
+    public static final int INITIAL_WINDOW = 16;
+    public static final int MIN_WINDOW = 2;
+
+    private final int maxWindow;
+    private double cwnd;
+    private double ssthresh;
+    private int recover = -1;
+    private long lossEvents;
+    private long timeouts;
+
+    public CongestionControl(int maxWindow) {
+        this.maxWindow = maxWindow;
+        this.ssthresh = maxWindow;
+        this.cwnd = Math.min(INITIAL_WINDOW, maxWindow);
+    }
+
+    public synchronized int window() {
+        return (int) cwnd;
+    }
+
+    public synchronized void onAdvance(int acked) {
+        if (cwnd < ssthresh) {
+            cwnd += acked;
+        } else {
+            cwnd += (double) acked / cwnd;
+        }
+        cwnd = Math.min(cwnd, maxWindow);
+    }
+
+    public synchronized void onLoss(int base, int next) {
+        if (base < recover) return;
+        ssthresh = Math.max(MIN_WINDOW, cwnd / 2);
+        cwnd = ssthresh;
+        recover = next;
+        lossEvents++;
+    }
+
+    public synchronized void onTimeout(int base, int next) {
+        if (base < recover && cwnd <= MIN_WINDOW) return;
+        ssthresh = Math.max(MIN_WINDOW, cwnd / 2);
+        cwnd = MIN_WINDOW;
+        recover = next;
+        timeouts++;
+    }
+
+    public synchronized long lossEvents() {
+        return lossEvents;
+    }
+
+    public synchronized long timeouts() {
+        return timeouts;
+    }
+}
@@ -0,0 +1,172 @@
+package server;
+
+import common.Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ContentCache {
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final int chunkSize;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long usedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    public ContentCache(long maxBytes, long maxEntryBytes, int chunkSize) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.chunkSize = chunkSize;
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(64, maxBytes / 4096)));
+    }
+
+    // kthen null kur file është më i madh se maxEntryBytes; atëherë thirrësi e lexon vetë
+    public Entry get(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        sketch.increment(key);
+
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            if (cached != null) remove(key);
+        }
+
+        misses.incrementAndGet();
+        if (size > maxEntryBytes) return null;
+
+        Entry loaded = Entry.load(key, size, lastModified, chunkSize);
+        if (Files.getLastModifiedTime(key).toMillis() == lastModified) {
+            admit(key, loaded);
+        }
+        return loaded;
+    }
+
+    // TinyLFU: një file i ri hyn vetëm nëse përdoret më shpesh se ata që do të nxirrte. Viktimat zgjidhen
+    // para se të hiqet ndonjë, kështu një kandidat i refuzuar nuk e boshatis cache-in
+    private synchronized void admit(Path key, Entry candidate) {
+        int candidateFrequency = sketch.frequency(key);
+        List<Path> victims = new ArrayList<>();
+        long freed = 0;
+        Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes - freed + candidate.size > maxBytes && it.hasNext()) {
+            Map.Entry<Path, Entry> victim = it.next();
+            if (sketch.frequency(victim.getKey()) > candidateFrequency) {
+                rejections.incrementAndGet();
+                return;
+            }
+            victims.add(victim.getKey());
+            freed += victim.getValue().size;
+        }
+        if (usedBytes - freed + candidate.size > maxBytes) {
+            rejections.incrementAndGet();
+            return;
+        }
+        for (Path victim : victims) {
+            remove(victim);
+            evictions.incrementAndGet();
+        }
+        Entry previous = entries.put(key, candidate);
+        if (previous != null) usedBytes -= previous.size;
+        usedBytes += candidate.size;
+    }
+
+    public synchronized void invalidate(Path path) {
+        remove(path.toAbsolutePath().normalize());
+    }
+
+    private void remove(Path key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) usedBytes -= removed.size;
+    }
+
+    public synchronized String getStats() {
+        return ">> Cache e përmbajtjes:\n"
+                + String.format(" - Hits: %d | Misses: %d | Nxjerrje: %d | Refuzime: %d\n",
+                hits.get(), misses.get(), evictions.get(), rejections.get())
+                + " - Madhësia: " + Utils.formatFileSize(usedBytes) + " / " + Utils.formatFileSize(maxBytes)
+                + " (" + entries.size() + " file)\n";
+    }
+
+    public static class Entry implements ChunkSource {
+        private final long size;
+        private final long lastModified;
+        private final int chunkSize;
+        private final ByteBuffer[] chunks;
+        private volatile String text;
+
+        private Entry(long size, long lastModified, int chunkSize, ByteBuffer[] chunks) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+        }
+
+        static Entry load(Path path, long size, long lastModified, int chunkSize) throws IOException {
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                for (int i = 0; i < chunks.length; i++) {
+                    ByteBuffer chunk = ByteBuffer.allocateDirect((int) Math.min(chunkSize, size - (long) i * chunkSize));
+                    while (chunk.hasRemaining()) {
+                        if (channel.read(chunk, (long) i * chunkSize + chunk.position()) < 0) break;
+                    }
+                    chunks[i] = chunk.flip().asReadOnlyBuffer();
+                }
+            }
+            return new Entry(size, lastModified, chunkSize, chunks);
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void copyTo(ByteBuffer target, int targetIndex, long position, int length) {
+            while (length > 0) {
+                ByteBuffer chunk = chunks[(int) (position / chunkSize)];
+                int offset = (int) (position % chunkSize);
+                int n = Math.min(length, chunk.limit() - offset);
+                if (n <= 0) break;
+                target.put(targetIndex, chunk, offset, n);
+                targetIndex += n;
+                position += n;
+                length -= n;
+            }
+        }
+
+        public String text() throws CharacterCodingException {
+            String result = text;
+            if (result == null) {
+                ByteBuffer all = ByteBuffer.allocate((int) size);
+                for (ByteBuffer chunk : chunks) all.put(chunk.duplicate());
+                result = StandardCharsets.UTF_8.newDecoder().decode(all.flip()).toString();
+                text = result;
+            }
+            return result;
+        }
+    }
+}
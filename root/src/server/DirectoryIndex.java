@@ -0,0 +1,200 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public final class DirectoryIndex implements AutoCloseable {
+    private final Path dir;
+    private final Function<String, Path> resolver;
+    private final Supplier<Collection<String>> extraNames;
+    private final ConcurrentSkipListMap<String, FileEntry> entries = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Set<String>> trigrams = new ConcurrentHashMap<>();
+    private final WatchService watcher;
+
+    public DirectoryIndex(Path dir, boolean watch) throws IOException {
+        this(dir, watch, dir::resolve, List::of);
+    }
+
+    // resolver jep file-in e një emri (p.sh. blob-in për emrat e ruajtur sipas përmbajtjes), extraNames
+    // emrat që nuk kanë file në direktori
+    public DirectoryIndex(Path dir, boolean watch, Function<String, Path> resolver,
+                          Supplier<Collection<String>> extraNames) throws IOException {
+        this.dir = dir;
+        this.resolver = resolver;
+        this.extraNames = extraNames;
+        this.watcher = watch ? dir.getFileSystem().newWatchService() : null;
+        if (watcher != null) {
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Thread t = new Thread(this::watchLoop, "directory-watcher");
+            t.setDaemon(true);
+            t.start();
+        }
+        rescan();
+    }
+
+    public Collection<FileEntry> list() {
+        return entries.values();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public FileEntry get(String name) {
+        return entries.get(name);
+    }
+
+    public List<FileEntry> search(String keyword) {
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        List<FileEntry> result = new ArrayList<>();
+
+        if (needle.length() < 3) {
+            for (FileEntry entry : entries.values()) {
+                if (entry.lowerName.contains(needle)) result.add(entry);
+            }
+            return result;
+        }
+
+        // kandidatët merren nga lista më e shkurtër e trigrameve dhe verifikohen me contains
+        Set<String> smallest = null;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            Set<String> posting = trigrams.get(trigram(needle, i));
+            if (posting == null) return result;
+            if (smallest == null || posting.size() < smallest.size()) smallest = posting;
+        }
+        for (String name : smallest) {
+            FileEntry entry = entries.get(name);
+            if (entry != null && entry.lowerName.contains(needle)) result.add(entry);
+        }
+        result.sort((a, b) -> a.name.compareTo(b.name));
+        return result;
+    }
+
+    public void refresh(String name) {
+        Path path = resolver.apply(name);
+        if (path == null) {
+            remove(name);
+            return;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attrs.isRegularFile()) {
+                put(new FileEntry(name, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                return;
+            }
+        } catch (IOException e) {
+            // file nuk ekziston më
+        }
+        remove(name);
+    }
+
+    public void remove(String name) {
+        FileEntry removed = entries.remove(name);
+        if (removed == null) return;
+        forEachTrigram(removed.lowerName, key -> {
+            Set<String> posting = trigrams.get(key);
+            if (posting != null) posting.remove(name);
+        });
+    }
+
+    public final void rescan() throws IOException {
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                refresh(name);
+                seen.add(name);
+            }
+        }
+        for (String name : extraNames.get()) {
+            refresh(name);
+            seen.add(name);
+        }
+        for (String name : entries.keySet()) {
+            if (!seen.contains(name)) remove(name);
+        }
+    }
+
+    private void put(FileEntry entry) {
+        FileEntry previous = entries.put(entry.name, entry);
+        if (previous == null) {
+            forEachTrigram(entry.lowerName, key ->
+                    trigrams.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(entry.name));
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                    } else {
+                        refresh(((Path) event.context()).getFileName().toString());
+                    }
+                }
+                if (!key.reset()) break;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // indeksi u mbyll
+        } catch (IOException e) {
+            System.err.println("Gabim gjatë rindërtimit të indeksit: " + e.getMessage());
+        }
+    }
+
+    private interface TrigramConsumer {
+        void accept(long key);
+    }
+
+    private static void forEachTrigram(String lowerName, TrigramConsumer consumer) {
+        for (int i = 0; i + 3 <= lowerName.length(); i++) {
+            consumer.accept(trigram(lowerName, i));
+        }
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watcher != null) watcher.close();
+    }
+
+    public static class FileEntry {
+        private final String name;
+        private final String lowerName;
+        private final long size;
+        private final long lastModified;
+
+        FileEntry(String name, long size, long lastModified) {
+            this.name = name;
+            this.lowerName = name.toLowerCase(Locale.ROOT);
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() { return name; }
+        public long getSize() { return size; }
+        public long getLastModified() { return lastModified; }
+    }
+}
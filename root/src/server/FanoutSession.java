@@ -0,0 +1,201 @@
+package server;
+
+import common.TransferFrame;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// një stream chunks i përbashkët për klientët që shkarkojnë të njëjtin file njëkohësisht: çdo chunk dërgohet
+// një herë në grupin multicast, ACK-et (SACK) e secilit marrës vijnë me unicast si zakonisht. Vrima që i mungon
+// vetëm një marrësi riparohet me unicast te ai, ajo që u mungon disave ridërgohet në grup, kështu egress-i
+// mbetet afërsisht sa file-i pavarësisht numrit të marrësve
+class FanoutSession {
+    final int id;
+    final String key;
+    final long size;
+    final int chunkSize;
+    final int chunkCount;
+    final int window;
+    private final ChunkSource source;
+    private final PacketSender multicast;
+    private final InetSocketAddress group;
+    private final TokenBucket pacer;
+    private final ByteBuffer frame;
+    private final long[] sentAt;
+    // chunks që kalimi i parë në grup nuk i ka dërguar ende
+    private final BitSet pass = new BitSet();
+    private final Map<ClientHandler, Member> members = new LinkedHashMap<>();
+    private boolean closed;
+    private long multicastBytes;
+    private long repairBytes;
+
+    FanoutSession(int id, String key, ChunkSource source, int chunkSize, int window, PacketSender multicast,
+                  InetSocketAddress group, long bytesPerSecond) {
+        this.id = id;
+        this.key = key;
+        this.source = source;
+        this.size = source.size();
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+        this.window = window;
+        this.multicast = multicast;
+        this.group = group;
+        this.pacer = new TokenBucket(bytesPerSecond, RateLimits.byteBurst(bytesPerSecond));
+        this.frame = ByteBuffer.allocateDirect(TransferFrame.DATA_HEADER_SIZE + chunkSize);
+        this.sentAt = new long[chunkCount];
+        pass.set(0, chunkCount);
+    }
+
+    // marrësi që vjen vonë merr me riparim chunks që grupi i ka dërguar para tij; false kur sesioni po mbyllet.
+    // Një kërkesë e ridërguar nga i njëjti klient nuk e rinis gjendjen e tij
+    synchronized boolean join(ClientHandler client, PacketSender sender) {
+        if (closed) return false;
+        if (members.containsKey(client)) return true;
+        Member member = new Member(sender, System.currentTimeMillis());
+        member.repair.set(0, chunkCount);
+        member.repair.andNot(pass);
+        members.put(client, member);
+        return true;
+    }
+
+    synchronized int memberCount() {
+        return members.size();
+    }
+
+    synchronized long multicastBytes() {
+        return multicastBytes;
+    }
+
+    synchronized long repairBytes() {
+        return repairBytes;
+    }
+
+    // kthen true kur marrësi i ka të gjithë chunks dhe del nga grupi
+    synchronized boolean onAck(ClientHandler client, ByteBuffer ack, long now) throws IOException {
+        Member member = members.get(client);
+        int cumulative = TransferFrame.ackCumulative(ack);
+        // ACK i pavlefshëm injorohet
+        if (member == null || cumulative < 0 || cumulative > chunkCount) return false;
+        member.lastAck = now;
+        member.have.set(0, cumulative);
+        int highest = -1;
+        int words = TransferFrame.ackWords(ack);
+        for (int w = 0; w < words; w++) {
+            long bits = TransferFrame.ackWord(ack, w);
+            while (bits != 0) {
+                int seq = cumulative + 1 + w * 64 + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (seq >= 0 && seq < chunkCount) {
+                    member.have.set(seq);
+                    highest = seq;
+                }
+            }
+        }
+        member.repair.andNot(member.have);
+        if (cumulative >= chunkCount) {
+            members.remove(client);
+            return true;
+        }
+
+        // vrimat nën chunk-un më të lartë të konfirmuar, si NACK
+        long guard = ServerConfig.RETRANSMIT_MS / 4;
+        for (int seq = member.have.nextClearBit(cumulative); seq < highest; seq = member.have.nextClearBit(seq + 1)) {
+            if (!pass.get(seq) && now - sentAt[seq] >= guard) member.repair.set(seq);
+        }
+        pump(now);
+        return false;
+    }
+
+    // thirret nga timer-i: chunks brenda dritares së marrësit pa konfirmim pas RETRANSMIT_MS kërkohen si riparim,
+    // pastaj dërgohet sa lejon ritmi i grupit
+    synchronized void tick(long now) throws IOException {
+        for (Member member : members.values()) {
+            int cumulative = member.have.nextClearBit(0);
+            int end = Math.min(chunkCount, cumulative + window);
+            for (int seq = cumulative; seq < end; seq = member.have.nextClearBit(seq + 1)) {
+                if (!pass.get(seq) && now - sentAt[seq] >= ServerConfig.RETRANSMIT_MS) member.repair.set(seq);
+            }
+        }
+        pump(now);
+    }
+
+    // hedh marrësit pa ACK për TRANSFER_IDLE_MS; kthen true kur nuk mbetet asnjë dhe sesioni mbyllet
+    synchronized boolean expire(long now) {
+        members.values().removeIf(member -> now - member.lastAck > ServerConfig.TRANSFER_IDLE_MS);
+        if (members.isEmpty()) closed = true;
+        return closed;
+    }
+
+    synchronized void close() {
+        closed = true;
+        members.clear();
+        source.close();
+    }
+
+    // riparimet para kalimit në grup, se ato mbajnë cumulative-in e marrësve
+    private void pump(long now) throws IOException {
+        while (pacer.hasTokens()) {
+            if (!repairNext(now)) {
+                int seq = pass.nextSetBit(0);
+                if (seq < 0) return;
+                pass.clear(seq);
+                send(seq, multicast, group, now);
+            }
+        }
+    }
+
+    private boolean repairNext(long now) throws IOException {
+        for (Map.Entry<ClientHandler, Member> entry : members.entrySet()) {
+            Member member = entry.getValue();
+            int seq = member.repair.nextSetBit(0);
+            if (seq < 0) continue;
+
+            List<Member> needing = new ArrayList<>();
+            for (Member other : members.values()) {
+                if (other.repair.get(seq)) needing.add(other);
+            }
+            for (Member other : needing) other.repair.clear(seq);
+            if (needing.size() > 1) {
+                send(seq, multicast, group, now);
+            } else {
+                repairBytes += send(seq, member.sender, entry.getKey().getSocketAddress(), now);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private int send(int seq, PacketSender sender, InetSocketAddress target, long now) throws IOException {
+        long position = (long) seq * chunkSize;
+        int length = (int) Math.min(chunkSize, size - position);
+        frame.clear();
+        source.copyTo(frame, TransferFrame.DATA_HEADER_SIZE, position, length);
+        TransferFrame.writeHeader(frame, TransferFrame.DATA, id, seq);
+        TransferFrame.writeChecksum(frame, length);
+        int wire = TransferFrame.DATA_HEADER_SIZE + length;
+        frame.clear().limit(wire);
+        sender.send(frame, target);
+        if (sender == multicast) multicastBytes += wire;
+        pacer.consume(wire);
+        sentAt[seq] = now;
+        return wire;
+    }
+
+    private static class Member {
+        private final PacketSender sender;
+        private final BitSet have = new BitSet();
+        private final BitSet repair = new BitSet();
+        private long lastAck;
+
+        Member(PacketSender sender, long now) {
+            this.sender = sender;
+            this.lastAck = now;
+        }
+    }
+}
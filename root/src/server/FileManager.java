@@ -1,17 +1,56 @@
 package server;
 
+import common.Utils;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
-import java.util.Base64;
+import java.util.List;
+import java.util.Set;
 
 public class FileManager {
+    // direktoritë e brendshme të serverit nën baseDir, që nuk shërbehen si file
+    private static final Set<String> RESERVED = Set.of(".blobs", ".uploads");
+
     private final String baseDir;
+    private final ContentCache contentCache;
+    private final SignatureCache signatures;
+    private final BlobStore blobs;
+    private final DirectoryIndex index;
 
     public FileManager(String baseDir) {
         this.baseDir = baseDir;
+        this.contentCache = new ContentCache(ServerConfig.CONTENT_CACHE_BYTES,
+                ServerConfig.CACHE_MAX_ENTRY_BYTES, ServerConfig.CHUNK_SIZE);
+        this.signatures = new SignatureCache(ServerConfig.SIGNATURE_CACHE_ENTRIES);
         createDirectoryIfNotExists(baseDir);
+        this.blobs = createBlobStore(Paths.get(baseDir));
+        this.index = createIndex(Paths.get(baseDir));
+        if (blobs != null) blobs.scanAsync();
+    }
+
+    private BlobStore createBlobStore(Path dir) {
+        try {
+            return new BlobStore(dir);
+        } catch (IOException e) {
+            System.err.println("Gabim gjatë hapjes së ruajtjes sipas përmbajtjes: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private DirectoryIndex createIndex(Path dir) {
+        try {
+            if (blobs == null) return new DirectoryIndex(dir, true);
+            return new DirectoryIndex(dir, true, this::locate, blobs::storedNames);
+        } catch (IOException e) {
+            System.err.println("Gabim gjatë indeksimit të direktorisë " + dir + ": " + e.getMessage());
+            return null;
+        }
     }
 
     private void createDirectoryIfNotExists(String directoryPath) {
@@ -27,6 +66,32 @@ public class FileManager {
     }
 
     public String listFiles() {
+        if (index == null) return scanFiles();
+        StringBuilder sb = new StringBuilder("Lista e file-ve:\n");
+        Collection<DirectoryIndex.FileEntry> files = index.list();
+        if (files.isEmpty()) return sb.append("(Nuk ka file)\n").toString();
+        for (DirectoryIndex.FileEntry file : files) {
+            sb.append(file.getName()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    public String searchFiles(String keyword) {
+        if (keyword == null || keyword.isEmpty()) return "Keyword i zbrazët";
+        if (index == null) return scanSearch(keyword);
+        if (index.size() == 0) return "Nuk ka file në direktorium";
+
+        StringBuilder sb = new StringBuilder("Rezultatet e kërkimit për '" + keyword + "':\n");
+        List<DirectoryIndex.FileEntry> found = index.search(keyword);
+        for (DirectoryIndex.FileEntry file : found) {
+            sb.append(file.getName()).append("\n");
+        }
+        if (found.isEmpty()) sb.append("(Nuk u gjet asnjë file)\n");
+        return sb.toString();
+    }
+
+    // rruga e vjetër me skanim të plotë, kur WatchService nuk është në dispozicion
+    public String scanFiles() {
         File dir = new File(baseDir);
         StringBuilder sb = new StringBuilder("Lista e file-ve:\n");
         File[] files = dir.listFiles();
@@ -34,55 +99,157 @@ public class FileManager {
         for (File file : files) {
             if (file.isFile()) sb.append(file.getName()).append("\n");
         }
+        if (blobs != null) {
+            for (String name : blobs.storedNames()) {
+                if (!new File(dir, name).isFile()) sb.append(name).append("\n");
+            }
+        }
         return sb.toString();
     }
 
-    public String searchFiles(String keyword) {
-        if (keyword == null || keyword.isEmpty()) return "Keyword i zbrazët";
-
+    public String scanSearch(String keyword) {
         File dir = new File(baseDir);
         File[] files = dir.listFiles();
-        if (files == null || files.length == 0) return "Nuk ka file në direktorium";
+        List<String> storedNames = blobs != null ? blobs.storedNames() : List.of();
+        if ((files == null || files.length == 0) && storedNames.isEmpty()) return "Nuk ka file në direktorium";
 
         StringBuilder sb = new StringBuilder("Rezultatet e kërkimit për '" + keyword + "':\n");
         boolean found = false;
-        for (File file : files) {
+        for (File file : files != null ? files : new File[0]) {
             if (file.isFile() && file.getName().toLowerCase().contains(keyword.toLowerCase())) {
                 sb.append(file.getName()).append("\n");
                 found = true;
             }
         }
+        for (String name : storedNames) {
+            if (!new File(dir, name).isFile() && name.toLowerCase().contains(keyword.toLowerCase())) {
+                sb.append(name).append("\n");
+                found = true;
+            }
+        }
         if (!found) sb.append("(Nuk u gjet asnjë file)\n");
         return sb.toString();
     }
 
     public String readFile(String filename) throws IOException {
-        Path path = Path.of(baseDir, filename).normalize();
-        if (!Files.exists(path) || !Files.isRegularFile(path)) return "Gabim: File nuk ekziston";
-        return Files.readString(path);
+        Path path = resolveFile(filename);
+        if (path == null) return "Gabim: File nuk ekziston";
+        ContentCache.Entry cached = contentCache.get(path);
+        return cached != null ? cached.text() : Files.readString(path);
+    }
+
+    public byte[] readRange(Path path, long offset, int length) throws IOException {
+        ContentCache.Entry cached = contentCache.get(path);
+        long size = cached != null ? cached.size() : Files.size(path);
+        int n = (int) Math.max(0, Math.min(length, size - offset));
+        ByteBuffer buffer = ByteBuffer.allocate(n);
+        if (cached != null) {
+            cached.copyTo(buffer, 0, offset, n);
+            return buffer.array();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) break;
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    public Path resolveFile(String filename) {
+        Path path = locate(filename);
+        if (path == null || !Files.exists(path) || !Files.isRegularFile(path)) return null;
+        return path;
     }
 
-    public String prepareDownload(String filename) throws IOException {
-        Path path = Path.of(baseDir, filename).normalize();
-        if (!Files.exists(path) || !Files.isRegularFile(path)) return "Gabim: File nuk ekziston";
+    // file-i i zakonshëm në direktori ka përparësi; përndryshe blob-i i emrit, nëse emri është në ruajtje.
+    // null për emrat jashtë baseDir ose në direktoritë e brendshme
+    private Path locate(String filename) {
+        Path path = inBaseDir(filename);
+        if (path == null || blobs == null || Files.isRegularFile(path)) return path;
+        Path blob = blobs.blobFor(filename);
+        return blob != null ? blob : path;
+    }
 
-        byte[] fileData = Files.readAllBytes(path);
-        String base64 = Base64.getEncoder().encodeToString(fileData);
+    private Path inBaseDir(String filename) {
+        Path base = Path.of(baseDir).toAbsolutePath().normalize();
+        Path path;
+        try {
+            path = base.resolve(filename).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (!path.startsWith(base) || path.equals(base)) return null;
+        return RESERVED.contains(base.relativize(path).getName(0).toString()) ? null : path;
+    }
 
-        return "DOWNLOAD:" + filename + ":" + base64;
+    public static boolean isReserved(String filename) {
+        return RESERVED.contains(filename);
     }
 
     public String deleteFile(String filename) {
+        if (inBaseDir(filename) == null) return "Gabim: Nuk mund të fshihet file";
         File file = new File(baseDir, filename);
-        if (file.exists() && file.isFile() && file.delete()) return "File u fshi me sukses: " + filename;
-        return "Gabim: Nuk mund të fshihet file";
+        boolean deleted = file.exists() && file.isFile() && file.delete();
+        if (blobs != null) {
+            try {
+                deleted |= blobs.removed(filename);
+            } catch (IOException e) {
+                System.err.println("Gabim gjatë lirimit të blob-it për " + filename + ": " + e.getMessage());
+            }
+        }
+        if (!deleted) return "Gabim: Nuk mund të fshihet file";
+        fileChanged(filename);
+        return "File u fshi me sukses: " + filename;
     }
 
     public String getFileInfo(String filename) {
-        File file = new File(baseDir, filename);
-        if (!file.exists()) return "Gabim: File nuk ekziston";
+        Path path = resolveFile(filename);
+        if (path == null) return "Gabim: File nuk ekziston";
+        File file = path.toFile();
         SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        return String.format("Informacion për %s:\nMadhësia: %d bytes\nModifikuar: %s\nPath: %s",
-                filename, file.length(), sdf.format(new Date(file.lastModified())), file.getAbsolutePath());
+        String digest;
+        try {
+            digest = blobs != null ? blobs.digest(path) : Utils.sha256(path);
+        } catch (IOException e) {
+            digest = "(" + e.getMessage() + ")";
+        }
+        return String.format("Informacion për %s:\nMadhësia: %d bytes\nModifikuar: %s\nSHA-256: %s\nPath: %s",
+                filename, file.length(), sdf.format(new Date(file.lastModified())), digest, file.getAbsolutePath());
+    }
+
+    // upload-i i verifikuar kalon në ruajtjen sipas përmbajtjes; pa të, thjesht zhvendoset te emri.
+    // Kthen file-in nga i cili shërbehet tani emri
+    public Path storeUpload(Path partial, String filename, String digest) throws IOException {
+        if (blobs != null) {
+            blobs.commit(partial, filename, digest);
+        } else {
+            Files.move(partial, Path.of(baseDir, filename), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        fileChanged(filename);
+        return locate(filename);
+    }
+
+    // null kur file nuk është indeksuar ende; nuk e lexon file-in
+    public String knownDigest(Path path) {
+        return blobs != null ? blobs.knownDigest(path) : null;
+    }
+
+    public String getBlobStats() {
+        return blobs != null ? blobs.getStats() : "";
+    }
+
+    public void fileChanged(String filename) {
+        contentCache.invalidate(Path.of(baseDir, filename));
+        signatures.invalidate(Path.of(baseDir, filename));
+        if (index != null) index.refresh(filename);
+    }
+
+    public ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    public SignatureCache getSignatures() {
+        return signatures;
     }
 }
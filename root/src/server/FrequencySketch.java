@@ -0,0 +1,60 @@
+package server;
+
+public class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = {0x97cb3127, 0xb1b9f2c5, 0x83f3a2d1, 0xc2b2ae35};
+
+    private final long[] table;
+    private final int width;
+    private final int sampleSize;
+    private int additions;
+
+    // count-min me numërues 4-bitësh; pas sampleSize rritjeve të gjithë përgjysmohen që frekuencat e vjetra të plaken
+    public FrequencySketch(int expectedEntries) {
+        this.width = Integer.highestOneBit(Math.max(64, expectedEntries) - 1) << 1;
+        this.table = new long[DEPTH * width / 16];
+        this.sampleSize = 10 * width;
+    }
+
+    public synchronized void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int slot = row * width + indexOf(hash, row);
+            int shift = (slot & 15) << 2;
+            if (((table[slot >>> 4] >>> shift) & 0xF) < 15) {
+                table[slot >>> 4] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) reset();
+    }
+
+    public synchronized int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = 15;
+        for (int row = 0; row < DEPTH; row++) {
+            int slot = row * width + indexOf(hash, row);
+            frequency = Math.min(frequency, (int) ((table[slot >>> 4] >>> ((slot & 15) << 2)) & 0xF));
+        }
+        return frequency;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash + SEEDS[row]) * SEEDS[row];
+        return (h ^ (h >>> 16)) & (width - 1);
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
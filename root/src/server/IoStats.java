@@ -0,0 +1,84 @@
+package server;
+
+import common.Utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// numërues të thirrjeve të sistemit në rrugën e paketave; syscalls/MB tregon sa i shtrenjtë është çdo byte
+// i transferuar dhe sa kursen grupimi (udp.batch)
+public class IoStats {
+    private static final LongAdder selects = new LongAdder();
+    private static final LongAdder receives = new LongAdder();
+    private static final LongAdder emptyReceives = new LongAdder();
+    private static final LongAdder receivedBytes = new LongAdder();
+    private static final LongAdder sends = new LongAdder();
+    private static final LongAdder sentBytes = new LongAdder();
+    private static final LongAdder bursts = new LongAdder();
+    private static final LongAdder sendDrops = new LongAdder();
+
+    private IoStats() {}
+
+    public static void selected() {
+        selects.increment();
+    }
+
+    // një grup nga një zgjim: count datagrame, plus një receive bosh kur socket-i u zbraz
+    public static void received(int count, long bytes, boolean drained) {
+        receives.add(count + (drained ? 1 : 0));
+        if (drained) emptyReceives.increment();
+        receivedBytes.add(bytes);
+    }
+
+    public static void sent(long bytes) {
+        sends.increment();
+        sentBytes.add(bytes);
+    }
+
+    public static void burst() {
+        bursts.increment();
+    }
+
+    // datagram i hedhur sepse buffer-i i dërgimit mbeti plot
+    public static void sendDropped() {
+        sendDrops.increment();
+    }
+
+    public static long selectCount() {
+        return selects.sum();
+    }
+
+    public static long receiveCount() {
+        return receives.sum();
+    }
+
+    public static long sendCount() {
+        return sends.sum();
+    }
+
+    public static long sendDropCount() {
+        return sendDrops.sum();
+    }
+
+    public static long receivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    public static long sentBytes() {
+        return sentBytes.sum();
+    }
+
+    public static String getStats() {
+        long syscalls = selects.sum() + receives.sum() + sends.sum();
+        long bytes = receivedBytes.sum() + sentBytes.sum();
+        long datagrams = receives.sum() - emptyReceives.sum();
+        long sent = sends.sum();
+        return String.format(">> I/O (grup %d):\n"
+                        + " - select %d | receive %d (%d bosh) | send %d në %d breshëri | hedhur (buffer plot) %d\n"
+                        + " - %.1f syscalls/MB për %s%s\n",
+                ServerConfig.IO_BATCH, selects.sum(), receives.sum(), emptyReceives.sum(), sent, bursts.sum(),
+                sendDrops.sum(),
+                bytes > 0 ? syscalls * 1048576.0 / bytes : 0.0, Utils.formatFileSize(bytes),
+                // core-i bllokues nuk kalon nga selector-i
+                selects.sum() > 0 ? String.format(" | %.1f datagrame/zgjim", (double) datagrams / selects.sum()) : "");
+    }
+}
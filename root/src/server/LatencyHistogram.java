@@ -0,0 +1,57 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+    // 32 nën-kova për çdo fuqi të dyshit, si HdrHistogram me ~3% saktësi; vlerat në nanosekonda
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final long MAX_VALUE = 1L << 40;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(indexOf(value));
+        total.incrementAndGet();
+        if (value > max.get()) max.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    // kthen kufirin e sipërm të kovës ku bie përqindja e kërkuar
+    public long percentile(double percent) {
+        long count = total.get();
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * percent / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    static long upperBound(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = (index >>> SUB_BITS) - 1;
+        long mantissa = (index & (SUB_COUNT - 1)) + SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,98 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MappedFileCache {
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Path, MappedFile> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long mappedBytes;
+
+    public MappedFileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public MappedFile get(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        synchronized (this) {
+            MappedFile cached = files.get(key);
+            if (cached != null && cached.size == attrs.size() && cached.lastModified == lastModified) {
+                return cached;
+            }
+        }
+
+        MappedFile mapped = MappedFile.map(key, lastModified);
+        synchronized (this) {
+            MappedFile previous = files.put(key, mapped);
+            if (previous != null) mappedBytes -= previous.size;
+            mappedBytes += mapped.size;
+            evict();
+        }
+        return mapped;
+    }
+
+    // nuk ka unmap eksplicit: hartat e nxjerra lirohen nga GC kur nuk i përdor më asnjë transferim
+    private void evict() {
+        Iterator<Map.Entry<Path, MappedFile>> it = files.entrySet().iterator();
+        while (mappedBytes > maxBytes && files.size() > 1 && it.hasNext()) {
+            mappedBytes -= it.next().getValue().size;
+            it.remove();
+        }
+    }
+
+    public static class MappedFile implements ChunkSource {
+        private final long size;
+        private final long lastModified;
+        private final MappedByteBuffer[] segments;
+
+        private MappedFile(long size, long lastModified, MappedByteBuffer[] segments) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.segments = segments;
+        }
+
+        static MappedFile map(Path path, long lastModified) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+                for (int i = 0; i < segments.length; i++) {
+                    long start = i * SEGMENT_SIZE;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+                }
+                return new MappedFile(size, lastModified, segments);
+            }
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void copyTo(ByteBuffer target, int targetIndex, long position, int length) {
+            while (length > 0) {
+                MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+                int offset = (int) (position % SEGMENT_SIZE);
+                int n = Math.min(length, segment.capacity() - offset);
+                target.put(targetIndex, segment, offset, n);
+                targetIndex += n;
+                position += n;
+                length -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+// pikë administrimi vetëm në localhost: /metrics në formatin tekst të Prometheus, /metrics.json në JSON
+public class MetricsEndpoint {
+    private final HttpServer server;
+
+    public MetricsEndpoint(int port, ServerMetrics metrics) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> respond(exchange, "text/plain; version=0.0.4", metrics::toPrometheus));
+        server.createContext("/metrics.json", exchange -> respond(exchange, "application/json", metrics::toJson));
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Metrikat në http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/metrics");
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, Supplier<String> body) throws IOException {
+        try (exchange) {
+            byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NioServerCore {
+    private final int port;
+    private final int receiveLoops;
+    private final BufferPool pool;
+
+    public NioServerCore(int port, int receiveLoops) {
+        this.port = port;
+        this.receiveLoops = Math.max(1, receiveLoops);
+        this.pool = new BufferPool(ServerConfig.BUFFER_POOL_SIZE, ServerConfig.RECEIVE_BUFFER_SIZE);
+    }
+
+    public void run() throws IOException {
+        List<DatagramChannel> channels = new ArrayList<>();
+        try {
+            for (int i = 0; i < receiveLoops; i++) {
+                channels.add(open());
+            }
+            System.out.println("Serveri është gati dhe po pret klientët... (" + receiveLoops + " receive loops)");
+
+            List<Thread> loops = new ArrayList<>();
+            for (int i = 0; i < channels.size(); i++) {
+                DatagramChannel channel = channels.get(i);
+                Thread t = new Thread(() -> receiveLoop(channel), "nio-receive-" + i);
+                t.start();
+                loops.add(t);
+            }
+            for (Thread t : loops) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (DatagramChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    // me SO_REUSEPORT kerneli i shpërndan paketat ndërmjet kanaleve sipas adresës së klientit
+    private DatagramChannel open() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        if (receiveLoops > 1) {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, ServerConfig.SOCKET_BUFFER_SIZE);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, ServerConfig.SOCKET_BUFFER_SIZE);
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        return channel;
+    }
+
+    // për çdo zgjim lexohen deri në IO_BATCH datagrame në unazën e buffer-ave dhe vetëm pastaj përpunohen;
+    // kur unaza mbushet socket-i ka ende të dhëna, kështu lexohet përsëri pa kaluar nga select()
+    private void receiveLoop(DatagramChannel channel) {
+        PacketSender sender = PacketSender.of(channel);
+        int batch = ServerConfig.IO_BATCH;
+        ByteBuffer[] ring = new ByteBuffer[batch];
+        InetSocketAddress[] sources = new InetSocketAddress[batch];
+        for (int i = 0; i < batch; i++) {
+            ring[i] = pool.acquire();
+        }
+
+        try (Selector selector = Selector.open()) {
+            channel.register(selector, SelectionKey.OP_READ);
+            boolean drained = true;
+
+            while (channel.isOpen()) {
+                if (drained) {
+                    selector.select();
+                    selector.selectedKeys().clear();
+                    IoStats.selected();
+                }
+
+                int count = 0;
+                long bytes = 0;
+                InetSocketAddress source;
+                while (count < batch && (source = (InetSocketAddress) channel.receive(ring[count])) != null) {
+                    sources[count] = source;
+                    bytes += ring[count].position();
+                    count++;
+                }
+                // pa grupim (batch 1) çdo datagram kalon nga select(), si një lexim për zgjim
+                drained = count < batch || batch == 1;
+                IoStats.received(count, bytes, count < batch);
+
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer received = ring[i].flip();
+                    ring[i] = pool.acquire();
+                    try {
+                        ServerMain.onPacket(sender, received, sources[i], () -> pool.release(received));
+                    } catch (IOException e) {
+                        System.err.println("Gabim gjatë dërgimit te " + sources[i] + ": " + e.getMessage());
+                    }
+                    sources[i] = null;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Gabim në receive loop: " + e.getMessage());
+        }
+    }
+}
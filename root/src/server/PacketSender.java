@@ -0,0 +1,87 @@
+package server;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.locks.LockSupport;
+
+public interface PacketSender {
+
+    void send(ByteBuffer data, InetSocketAddress target) throws IOException;
+
+    default boolean prefersDirect() {
+        return false;
+    }
+
+    // frame-t e përgatitur të një dritareje dërgohen njëri pas tjetrit, pa përgatitjen e chunk-ut tjetër mes tyre
+    default void sendBatch(ByteBuffer[] frames, int count, InetSocketAddress target) throws IOException {
+        for (int i = 0; i < count; i++) {
+            send(frames[i], target);
+        }
+    }
+
+    static PacketSender of(DatagramSocket socket) {
+        return new PacketSender() {
+            @Override
+            public void send(ByteBuffer data, InetSocketAddress target) throws IOException {
+                int length = data.remaining();
+                if (data.hasArray()) {
+                    socket.send(new DatagramPacket(data.array(), data.arrayOffset() + data.position(), length, target));
+                } else {
+                    byte[] copy = new byte[length];
+                    data.duplicate().get(copy);
+                    socket.send(new DatagramPacket(copy, length, target));
+                }
+                data.position(data.limit());
+                IoStats.sent(length);
+            }
+
+            // një DatagramPacket për gjithë breshërinë në vend të një për frame
+            @Override
+            public void sendBatch(ByteBuffer[] frames, int count, InetSocketAddress target) throws IOException {
+                DatagramPacket packet = null;
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer data = frames[i];
+                    if (!data.hasArray()) {
+                        send(data, target);
+                        continue;
+                    }
+                    int length = data.remaining();
+                    if (packet == null) {
+                        packet = new DatagramPacket(data.array(), data.arrayOffset() + data.position(), length, target);
+                    } else {
+                        packet.setData(data.array(), data.arrayOffset() + data.position(), length);
+                    }
+                    socket.send(packet);
+                    data.position(data.limit());
+                    IoStats.sent(length);
+                }
+            }
+        };
+    }
+
+    // kanali është jo-bllokues, kur buffer-i i dërgimit është plot provojmë përsëri për pak kohë; pas kësaj
+    // datagrami hidhet dhe numërohet, që humbja të mos ngatërrohet me humbje në rrjet
+    static PacketSender of(DatagramChannel channel) {
+        return new PacketSender() {
+            @Override
+            public void send(ByteBuffer data, InetSocketAddress target) throws IOException {
+                for (int attempt = 0; attempt < 200; attempt++) {
+                    int sent = channel.send(data, target);
+                    IoStats.sent(sent);
+                    if (sent > 0 || !data.hasRemaining()) return;
+                    LockSupport.parkNanos(50_000);
+                }
+                IoStats.sendDropped();
+            }
+
+            @Override
+            public boolean prefersDirect() {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package server;
+
+import common.Utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// kufijtë për klient (kërkesa/s dhe bytes/s, kovat mbahen te ClientHandler) dhe buxheti global i daljes;
+// bytes/s kufizon transferimet me chunks, përgjigjet e komandave kufizohen nga kërkesa/s
+public class RateLimits {
+    private final long requestsPerSecond;
+    private final long bytesPerSecond;
+    private final TokenBucket egress;
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public RateLimits(long requestsPerSecond, long bytesPerSecond, long egressBytesPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.egress = egressBytesPerSecond > 0
+                ? new TokenBucket(egressBytesPerSecond, byteBurst(egressBytesPerSecond)) : null;
+    }
+
+    public static RateLimits fromConfig() {
+        return new RateLimits(ServerConfig.CLIENT_REQUESTS_PER_SEC, ServerConfig.CLIENT_BYTES_PER_SEC,
+                ServerConfig.EGRESS_BYTES_PER_SEC);
+    }
+
+    // 50 ms dalje, por jo më pak se disa chunks që dritarja të mund të lëvizë
+    static long byteBurst(long bytesPerSecond) {
+        return Math.max(4L * ServerConfig.CHUNK_SIZE, bytesPerSecond / 20);
+    }
+
+    public boolean admitRequest(ClientHandler client) {
+        TokenBucket requests = client.getRequestBucket();
+        if (requests == null || requests.tryConsume(1)) return true;
+        rejectedRequests.increment();
+        return false;
+    }
+
+    public boolean canSend(ClientHandler client) {
+        TokenBucket bytes = client.getByteBucket();
+        if ((bytes == null || bytes.hasTokens()) && (egress == null || egress.hasTokens())) return true;
+        throttled.increment();
+        return false;
+    }
+
+    public void onSent(ClientHandler client, long length) {
+        TokenBucket bytes = client.getByteBucket();
+        if (bytes != null) bytes.consume(length);
+        if (egress != null) egress.consume(length);
+    }
+
+    public String getStats() {
+        return ">> Kufizimet: kërkesa/s për klient " + (requestsPerSecond > 0 ? requestsPerSecond : "pa kufi")
+                + " | për klient " + rate(bytesPerSecond)
+                + " | dalje globale " + rate(egress != null ? egress.getRatePerSecond() : 0) + "\n"
+                + " - Kërkesa të refuzuara: " + rejectedRequests.sum()
+                + " | Frenime të transferimeve: " + throttled.sum() + "\n";
+    }
+
+    private static String rate(long bytesPerSecond) {
+        return bytesPerSecond > 0 ? Utils.formatFileSize(bytesPerSecond) + "/s" : "pa kufi";
+    }
+}
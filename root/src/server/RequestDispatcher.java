@@ -0,0 +1,95 @@
+package server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RequestDispatcher {
+
+    public enum Mode { THREAD, POOL, VIRTUAL }
+
+    private final Mode mode;
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService virtualExecutor;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RequestDispatcher(Mode mode, int workers, int queueCapacity, int maxInFlight) {
+        this.mode = mode;
+        this.maxInFlight = maxInFlight;
+        this.pool = mode == Mode.POOL ? createPool(workers, queueCapacity) : null;
+        this.virtualExecutor = mode == Mode.VIRTUAL ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    public static RequestDispatcher fromConfig() {
+        Mode mode = Mode.valueOf(ServerConfig.DISPATCH_MODE.toUpperCase());
+        return new RequestDispatcher(mode, ServerConfig.WORKER_THREADS,
+                ServerConfig.WORKER_QUEUE, ServerConfig.MAX_IN_FLIGHT);
+    }
+
+    private static ThreadPoolExecutor createPool(int workers, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "udp-worker-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public boolean dispatch(Runnable task) {
+        if (mode == Mode.POOL) {
+            try {
+                pool.execute(task);
+                return true;
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        }
+
+        // THREAD dhe VIRTUAL nuk kanë radhë, prandaj kufizohen me numrin e kërkesave në proces
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        Runnable tracked = () -> {
+            try {
+                task.run();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+        if (mode == Mode.VIRTUAL) virtualExecutor.execute(tracked);
+        else new Thread(tracked).start();
+        return true;
+    }
+
+    public int queueDepth() {
+        return mode == Mode.POOL ? pool.getQueue().size() : 0;
+    }
+
+    public int activeCount() {
+        return mode == Mode.POOL ? pool.getActiveCount() : inFlight.get();
+    }
+
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+        if (virtualExecutor != null) virtualExecutor.shutdown();
+    }
+}
@@ -0,0 +1,115 @@
+package server;
+
+import common.Compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResponsePager {
+    public static final String NO_CURSOR = "-";
+
+    private final ConcurrentHashMap<Integer, PagedResponse> responses = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final int pageSize;
+    private final int batch;
+
+    public ResponsePager(int pageSize, int batch) {
+        this.pageSize = pageSize;
+        this.batch = batch;
+    }
+
+    public boolean fitsInOnePacket(byte[] body) {
+        return body.length <= pageSize;
+    }
+
+    // ndan përgjigjen në pjesë "PAGE:id:pjesa:totali:cursor\n<të dhëna>" dhe dërgon grupin e parë; për klientët
+    // që kanë negociuar kompresim trupi kompresohet i tëri dhe header-i merr fushën ":z" (pjesët nuk janë më tekst)
+    public long send(PacketSender sender, ClientHandler client, byte[] body, String cursor) throws IOException {
+        expireOld();
+
+        String flag = "";
+        if (client.getCodec() != Compression.Codec.NONE && body.length > pageSize) {
+            byte[] compressed = Compression.compress(client.getCodec(), body);
+            if (compressed != null) {
+                body = compressed;
+                flag = ":z";
+            }
+        }
+        boolean text = flag.isEmpty();
+
+        int id = nextId.getAndIncrement();
+        int total = 0;
+        for (int start = 0; start < body.length || total == 0; total++) {
+            start = text ? utf8Boundary(body, Math.min(body.length, start + pageSize), start)
+                    : Math.min(body.length, start + pageSize);
+        }
+
+        byte[][] parts = new byte[total][];
+        int start = 0;
+        for (int i = 0; i < total; i++) {
+            int end = text ? utf8Boundary(body, Math.min(body.length, start + pageSize), start)
+                    : Math.min(body.length, start + pageSize);
+            byte[] header = ("PAGE:" + id + ":" + i + ":" + total + ":" + cursor + flag + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            byte[] part = new byte[header.length + end - start];
+            System.arraycopy(header, 0, part, 0, header.length);
+            System.arraycopy(body, start, part, header.length, end - start);
+            parts[i] = part;
+            start = end;
+        }
+
+        // mbahet deri sa të skadojë që klienti të mund të kërkojë pjesët e humbura
+        PagedResponse response = new PagedResponse(client, parts);
+        responses.put(id, response);
+        return sendParts(sender, response, 0, batch);
+    }
+
+    // kthen -1 kur përgjigjja nuk ekziston më ose i përket një klienti tjetër
+    public long resend(PacketSender sender, ClientHandler client, int id, int from, int count) throws IOException {
+        PagedResponse response = responses.get(id);
+        if (response == null || response.client != client) return -1;
+        response.lastAccess = System.currentTimeMillis();
+        return sendParts(sender, response, from, Math.min(count, batch));
+    }
+
+    public int pendingCount() {
+        return responses.size();
+    }
+
+    private long sendParts(PacketSender sender, PagedResponse response, int from, int count) throws IOException {
+        long sent = 0;
+        int end = Math.min(response.parts.length, from + Math.max(0, count));
+        for (int i = Math.max(0, from); i < end; i++) {
+            sender.send(ByteBuffer.wrap(response.parts[i]), response.client.getSocketAddress());
+            sent += response.parts[i].length;
+        }
+        return sent;
+    }
+
+    private void expireOld() {
+        long now = System.currentTimeMillis();
+        responses.values().removeIf(r -> now - r.lastAccess > ServerConfig.RESPONSE_TTL_MS);
+    }
+
+    // nuk e ndan një karakter UTF-8 mes dy pjesëve; kthen fundin e pjesës që fillon në start
+    public static int utf8Boundary(byte[] data, int end, int start) {
+        if (end >= data.length) return data.length;
+        int boundary = end;
+        while (boundary > start && (data[boundary] & 0xC0) == 0x80) boundary--;
+        return boundary > start ? boundary : end;
+    }
+
+    private static class PagedResponse {
+        private final ClientHandler client;
+        private final byte[][] parts;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        PagedResponse(ClientHandler client, byte[][] parts) {
+            this.client = client;
+            this.parts = parts;
+        }
+    }
+}
@@ -1,11 +1,83 @@
 package server;
 
 public class ServerConfig {
-    public static final int PORT = 5002;
+    // me udp.port dhe udp.baseDir disa shard-e të një cluster-i mund të punojnë në të njëjtën makinë
+    public static final int PORT = Integer.getInteger("udp.port", 5002);
     public static final int TIMEOUT_MS = 60000;
-    public static final String BASE_DIR = "root/src/server_files";
+    public static final int SESSION_TICK_MS = Integer.getInteger("udp.sessionTick", 1000);
+    public static final int MAX_CLIENTS = Integer.getInteger("udp.maxClients", 5);
+    public static final String BASE_DIR = System.getProperty("udp.baseDir", "root/src/server_files");
     public static final String DOWNLOADS = "root/src/downloads";
     public static final String ADMIN_PASSWORD = "admin123";
     public static final int BUFFER_SIZE = 4096;
 
-}
\ No newline at end of file
+    public static final int CHUNK_SIZE = Integer.getInteger("udp.chunkSize", 1400);
+    public static final int WINDOW_SIZE = Integer.getInteger("udp.window", 512);
+    public static final int RETRANSMIT_MS = 100;
+    public static final int TRANSFER_IDLE_MS = 15000;
+    public static final int UPLOAD_RESUME_MS = 10 * 60 * 1000;
+    public static final int SOCKET_BUFFER_SIZE = 4 * 1024 * 1024;
+    public static final int RECEIVE_BUFFER_SIZE = Math.max(BUFFER_SIZE, CHUNK_SIZE + 64);
+    public static final boolean MMAP_DOWNLOADS = !"read".equalsIgnoreCase(System.getProperty("udp.download", "mmap"));
+    public static final long MMAP_CACHE_BYTES = Long.getLong("udp.mmapCacheBytes", 4L * 1024 * 1024 * 1024);
+    public static final long CONTENT_CACHE_BYTES = Long.getLong("udp.cacheBytes", 256L * 1024 * 1024);
+    public static final long CACHE_MAX_ENTRY_BYTES = Long.getLong("udp.cacheMaxEntry", 16L * 1024 * 1024);
+    public static final int SIGNATURE_CACHE_ENTRIES = Integer.getInteger("udp.signatureCache", 64);
+    // te serveri "off" e çaktivizon kompresimin; te klienti është kodeku që kërkohet (deflate|fast|off)
+    public static final String COMPRESSION = System.getProperty("udp.compression", "deflate");
+
+    public static final int PAGE_SIZE = Integer.getInteger("udp.pageSize", CHUNK_SIZE);
+    public static final int PAGE_BATCH = Integer.getInteger("udp.pageBatch", 64);
+    public static final int READ_LIMIT = Integer.getInteger("udp.readLimit", 1024 * 1024);
+    public static final int RESPONSE_TTL_MS = 60000;
+
+    public static final boolean BINARY_PROTOCOL = "binary".equalsIgnoreCase(System.getProperty("udp.protocol", "text"));
+
+    public static final String DISPATCH_MODE = System.getProperty("udp.dispatch", "pool");
+    public static final int WORKER_THREADS = Integer.getInteger("udp.workers",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    public static final int WORKER_QUEUE = Integer.getInteger("udp.queue", 4096);
+    public static final int MAX_IN_FLIGHT = Integer.getInteger("udp.maxInFlight", 10000);
+
+    // 0 do të thotë pa kufi
+    public static final long CLIENT_REQUESTS_PER_SEC = Long.getLong("udp.clientRps", 0);
+    public static final long CLIENT_BYTES_PER_SEC = Long.getLong("udp.clientBps", 0);
+    public static final long EGRESS_BYTES_PER_SEC = Long.getLong("udp.egressBps", 0);
+    // paritet XOR për grupe chunks të /download: "off", "auto" (grupi ndjek humbjen e matur) ose madhësi fikse grupi
+    public static final String FEC = System.getProperty("udp.fec", "off");
+    public static final boolean CONGESTION_CONTROL = !"off".equalsIgnoreCase(System.getProperty("udp.congestion", "aimd"));
+
+    public static final int CLIENT_IN_FLIGHT = Integer.getInteger("udp.clientInFlight", 64);
+    public static final int CLIENT_DOWNLOADS = Integer.getInteger("udp.clientDownloads", 4);
+    public static final long MGET_RATE = Long.getLong("udp.mgetRate", 0);
+
+    // /fanout: shkarkimet njëkohësisht të të njëjtit file ndajnë një stream në këtë grup multicast IPv4;
+    // "off" i kthen në shkarkime të zakonshme. Ndërfaqja bosh = ajo e paracaktuara e sistemit
+    public static final String FANOUT_GROUP = System.getProperty("udp.fanoutGroup", "239.255.42.99:5003");
+    public static final String FANOUT_INTERFACE = System.getProperty("udp.fanoutInterface", "");
+    public static final int FANOUT_TTL = Integer.getInteger("udp.fanoutTtl", 1);
+    // grupi nuk ka kontroll mbingarkese për çdo marrës, ritmi është fiks
+    public static final long FANOUT_BYTES_PER_SEC = Long.getLong("udp.fanoutBps", 16L * 1024 * 1024);
+
+    // upload-et shkruhen në disk nga writer-a më vete; mbi udp.writeQueue chunks në pritje chunks e rinj nuk
+    // konfirmohen. force(): "commit" një herë para ruajtjes, "file" pas çdo grupi shkrimesh të file-it,
+    // "interval" çdo udp.fsyncMs për të gjithë file-t e ndryshuar, "off" kurrë
+    public static final int WRITE_QUEUE = Integer.getInteger("udp.writeQueue", 4096);
+    public static final int WRITER_THREADS = Integer.getInteger("udp.writers", 2);
+    public static final String FSYNC = System.getProperty("udp.fsync", "commit");
+    public static final int FSYNC_INTERVAL_MS = Integer.getInteger("udp.fsyncMs", 50);
+
+    // cluster: shard-et "host:port,host:port,..." që klienti i përdor me consistent hashing; bosh = një server.
+    // Çdo shard është një ServerMain i zakonshëm me direktorinë e vet
+    public static final String CLUSTER = System.getProperty("udp.cluster", "");
+    public static final int CLUSTER_VNODES = Integer.getInteger("udp.vnodes", 160);
+
+    public static final int ADMIN_PORT = Integer.getInteger("udp.adminPort", 9102);
+
+    public static final String SERVER_CORE = System.getProperty("udp.core", "blocking");
+    public static final int RECEIVE_LOOPS = Integer.getInteger("udp.receivers", 1);
+    public static final int BUFFER_POOL_SIZE = Integer.getInteger("udp.bufferPool", 1024);
+    // datagrame të lexuara për zgjim të selector-it dhe chunks të dërguar si një breshëri; 1 = pa grupim
+    public static final int IO_BATCH = Math.max(1, Integer.getInteger("udp.batch", 32));
+
+}
@@ -1,68 +1,137 @@
 package server;
 
-import java.io.FileOutputStream;
+import common.BlockSignatures;
+import common.Command;
+import common.CommandFrame;
+import common.Compression;
+import common.TransferFrame;
+import common.Utils;
+
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Base64;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ServerHandler implements Runnable {
 
-    private final DatagramSocket socket;
-    private final DatagramPacket packet;
+    private final PacketSender sender;
+    private final ByteBuffer request;
     private final ClientHandler client;
     private final FileManager fileManager;
     private final TrafficMonitor trafficMonitor;
-    private final Map<String, ClientHandler> clients;
+    private final SessionTable clients;
+    private final TransferManager transferManager;
+    private final ResponsePager pager;
+    private final ServerMetrics metrics;
+    private final Runnable onComplete;
+    private int binaryOpcode = -1;
+    private int binaryRequestId;
+    private Command command;
+    private long bytesOut;
+    private boolean error;
 
-    private static final ConcurrentHashMap<String, String> uploads = new ConcurrentHashMap<>();
+    private static final Pattern READ_RANGE = Pattern.compile("(.+?)\\s+(\\d+)\\s+(\\d+)");
+    private static final Pattern DOWNLOAD_RATE = Pattern.compile("(.+?)\\s+(\\d+)");
+    private static final Pattern DELTA_RANGES = Pattern.compile("(.+?)\\s+(\\d+)\\s+([\\d,\\-]+)");
 
-    public ServerHandler(DatagramSocket socket, DatagramPacket packet, ClientHandler client,
+    public ServerHandler(PacketSender sender, ByteBuffer request, ClientHandler client,
             FileManager fileManager, TrafficMonitor trafficMonitor,
-            Map<String, ClientHandler> clients) {
-        this.socket = socket;
-        this.packet = packet;
+            SessionTable clients, TransferManager transferManager, ResponsePager pager,
+            ServerMetrics metrics, Runnable onComplete) {
+        this.sender = sender;
+        this.request = request;
         this.client = client;
         this.fileManager = fileManager;
         this.trafficMonitor = trafficMonitor;
         this.clients = clients;
+        this.transferManager = transferManager;
+        this.pager = pager;
+        this.metrics = metrics;
+        this.onComplete = onComplete;
     }
 
     @Override
     public void run() {
-        String msg = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8).trim();
+        long start = System.nanoTime();
+        int bytesIn = request.remaining();
+        boolean frame = TransferFrame.isFrame(request);
+        try {
+            if (frame) handleFrame();
+            else handleCommand();
+        } finally {
+            if (metrics != null) {
+                long nanos = System.nanoTime() - start;
+                if (frame) metrics.recordFrame(nanos, bytesIn, bytesOut);
+                else metrics.record(command, nanos, bytesIn, bytesOut, error);
+            }
+            if (onComplete != null) onComplete.run();
+        }
+    }
 
+    private interface Action {
+        void run(ServerHandler handler, String args) throws IOException;
+    }
+
+    private static final Action[] ACTIONS = new Action[256];
+
+    static {
+        ACTIONS[Command.PING.opcode()] = (h, args) -> h.sendResponse("PONG");
+        ACTIONS[Command.LOGIN.opcode()] = ServerHandler::handleLogin;
+        ACTIONS[Command.LIST.opcode()] = (h, args) -> h.sendResponse(h.fileManager.listFiles());
+        ACTIONS[Command.READ.opcode()] = ServerHandler::handleRead;
+        ACTIONS[Command.PAGE.opcode()] = ServerHandler::handlePage;
+        ACTIONS[Command.DOWNLOAD.opcode()] = ServerHandler::handleDownload;
+        ACTIONS[Command.DELETE.opcode()] = ServerHandler::handleDelete;
+        ACTIONS[Command.UPLOAD_BEGIN.opcode()] = ServerHandler::handleUploadBegin;
+        ACTIONS[Command.UPLOAD_COMMIT.opcode()] = ServerHandler::handleUploadCommit;
+        ACTIONS[Command.SEARCH.opcode()] = (h, args) -> h.sendResponse(h.fileManager.searchFiles(args));
+        ACTIONS[Command.INFO.opcode()] = (h, args) -> h.sendResponse(h.fileManager.getFileInfo(args));
+        ACTIONS[Command.STATS.opcode()] = (h, args) -> h.sendResponse(h.trafficMonitor.getStats(h.clients)
+                + h.fileManager.getContentCache().getStats()
+                + h.fileManager.getSignatures().getStats()
+                + h.fileManager.getBlobStats()
+                + h.transferManager.getLimitStats()
+                + IoStats.getStats()
+                + h.transferManager.getFanoutStats()
+                + Compression.getStats()
+                + (h.metrics != null ? h.metrics.getStats() : ""));
+        ACTIONS[Command.DELTA_SIG.opcode()] = ServerHandler::handleDeltaSignatures;
+        ACTIONS[Command.DELTA_GET.opcode()] = ServerHandler::handleDeltaGet;
+        ACTIONS[Command.CODECS.opcode()] = ServerHandler::handleCodecs;
+        ACTIONS[Command.FANOUT.opcode()] = ServerHandler::handleFanout;
+    }
+
+    private void handleCommand() {
+        int length = request.remaining();
         if (trafficMonitor != null) {
-            trafficMonitor.recordMessageReceived(packet.getLength(), client.getClientKey());
+            trafficMonitor.recordMessageReceived(length, client);
+        }
+
+        Action action;
+        String args;
+        if (CommandFrame.isCommand(request)) {
+            binaryOpcode = CommandFrame.opcode(request);
+            binaryRequestId = CommandFrame.requestId(request);
+            command = Command.fromOpcode(binaryOpcode);
+            action = ACTIONS[binaryOpcode];
+            args = CommandFrame.arguments(request);
+        } else {
+            String msg = CommandFrame.text(request, request.position(), length).trim();
+            command = Command.fromText(msg);
+            action = command != null ? ACTIONS[command.opcode()] : null;
+            args = action != null ? Command.argumentsOf(msg) : msg;
         }
 
         try {
-            if (msg.startsWith("/login "))
-                handleLogin(msg);
-            else if (msg.equalsIgnoreCase("/list"))
-                sendResponse(fileManager.listFiles());
-            else if (msg.startsWith("/read "))
-                sendResponse(fileManager.readFile(msg.substring(6).trim()));
-            else if (msg.startsWith("/download "))
-                handleDownload(msg.substring(10).trim());
-            else if (msg.startsWith("/delete "))
-                handleDelete(msg.substring(8).trim());
-            else if (msg.startsWith("/upload_start "))
-                handleUpload(msg);
-            else if (msg.startsWith("/search "))
-                sendResponse(fileManager.searchFiles(msg.substring(8).trim()));
-            else if (msg.startsWith("/info "))
-                sendResponse(fileManager.getFileInfo(msg.substring(6).trim()));
-            else if (msg.equalsIgnoreCase("STATS"))
-                sendResponse(trafficMonitor.getStats(new ConcurrentHashMap<>(clients)));
+            if (action == null || args == null)
+                sendResponse("Komandë e panjohur: " + (args != null ? args : "opcode " + binaryOpcode));
             else
-                sendResponse("Komandë e panjohur: " + msg);
+                action.run(this, args);
         } catch (IOException e) {
+            error = true;
             try {
                 sendResponse("Gabim në server: " + e.getMessage());
             } catch (IOException ex) {
@@ -71,8 +140,7 @@ public class ServerHandler implements Runnable {
         }
     }
 
-    private void handleLogin(String msg) throws IOException {
-        String password = msg.substring(7).trim();
+    private void handleLogin(String password) throws IOException {
         if (password.equals(ServerConfig.ADMIN_PASSWORD)) {
             client.promoteToAdmin();
             sendResponse("Mirë se vini, Admin!");
@@ -81,6 +149,63 @@ public class ServerHandler implements Runnable {
         }
     }
 
+    private void handleRead(String args) throws IOException {
+        String filename = args;
+        long offset = 0;
+        int length = ServerConfig.READ_LIMIT;
+
+        Matcher range = READ_RANGE.matcher(args);
+        boolean ranged = range.matches();
+        if (ranged) {
+            try {
+                filename = range.group(1);
+                offset = Long.parseLong(range.group(2));
+                length = (int) Math.min(ServerConfig.READ_LIMIT, Long.parseLong(range.group(3)));
+            } catch (NumberFormatException e) {
+                sendResponse("Format gabim: /read <file> [offset gjatësia]");
+                return;
+            }
+        }
+
+        Path path = fileManager.resolveFile(filename);
+        if (path == null) {
+            sendResponse("Gabim: File nuk ekziston");
+            return;
+        }
+        long size = Files.size(path);
+        if (!ranged && size <= ServerConfig.READ_LIMIT) {
+            sendResponse(fileManager.readFile(filename));
+            return;
+        }
+
+        // lexojmë një byte më shumë që pjesa të mos përfundojë në mes të një karakteri UTF-8
+        byte[] data = fileManager.readRange(path, offset, length + 1);
+        int end = data.length > length ? ResponsePager.utf8Boundary(data, length, 0) : data.length;
+        long next = offset + end;
+        sendResponse(new String(data, 0, end, StandardCharsets.UTF_8),
+                next < size ? Long.toString(next) : ResponsePager.NO_CURSOR);
+    }
+
+    private void handlePage(String args) throws IOException {
+        String[] parts = args.split("\\s+");
+        try {
+            int id = Integer.parseInt(parts[0]);
+            int from = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            int count = parts.length > 2 ? Integer.parseInt(parts[2]) : ServerConfig.PAGE_BATCH;
+            long sent = pager.resend(sender, client, id, from, count);
+            if (sent < 0) {
+                sendResponse("Gabim: përgjigjja " + id + " ka skaduar");
+                return;
+            }
+            bytesOut += sent;
+            if (trafficMonitor != null) {
+                trafficMonitor.recordMessageSent(sent, client);
+            }
+        } catch (NumberFormatException e) {
+            sendResponse("Format gabim: /page <id> [nga] [sa]");
+        }
+    }
+
     private void handleDelete(String filename) throws IOException {
         if (!client.isAdmin()) {
             sendResponse("Vetëm admin mund të fshijë file.");
@@ -89,76 +214,174 @@ public class ServerHandler implements Runnable {
         sendResponse(fileManager.deleteFile(filename));
     }
 
-    private void handleDownload(String filename) throws IOException {
-        String response = fileManager.prepareDownload(filename);
-        sendResponse(response);
+    private void handleFrame() {
+        if (trafficMonitor != null) {
+            trafficMonitor.recordMessageReceived(request.remaining(), client);
+        }
+        try {
+            transferManager.handleFrame(sender, request, client);
+        } catch (IOException e) {
+            System.err.println("Gabim gjatë transferimit: " + e.getMessage());
+        }
     }
 
-    private void handleUpload(String msg) throws IOException {
-        if (!client.isAdmin()) {
-            sendResponse("Vetëm admin mund të bëjë upload.");
+    // argumenti i dytë opsional është kufiri i shpejtësisë në bytes/s
+    private void handleDownload(String args) throws IOException {
+        String filename = args;
+        long rate = 0;
+        Matcher limited = DOWNLOAD_RATE.matcher(args);
+        if (limited.matches()) {
+            try {
+                rate = Long.parseLong(limited.group(2));
+                filename = limited.group(1);
+            } catch (NumberFormatException e) {
+                sendResponse("Format gabim: /download <file> [bytes/s]");
+                return;
+            }
+        }
+
+        Path path = fileManager.resolveFile(filename);
+        if (path == null) {
+            sendResponse("Gabim: File nuk ekziston");
             return;
         }
+        sendResponse(transferManager.startDownload(sender, client, path, nameOf(filename), rate));
+    }
 
-        if (msg.length() <= 14) {
-            sendResponse("Format gabim: /upload_start <filename>:<base64content>");
+    // si /download, por shkarkimet njëkohësisht të të njëjtit file ndajnë një stream multicast
+    private void handleFanout(String filename) throws IOException {
+        Path path = fileManager.resolveFile(filename);
+        if (path == null) {
+            sendResponse("Gabim: File nuk ekziston");
             return;
         }
+        sendResponse(transferManager.startFanout(sender, client, path, nameOf(filename)));
+    }
 
-        String[] parts = msg.substring(14).split(":", 2);
-        if (parts.length < 2) {
-            sendResponse("Format gabim: /upload_start <filename>:<base64content>");
+    // nënshkrimet e blloqeve dërgohen si transferim i zakonshëm; klienti gjen vetë blloqet që i ka
+    private void handleDeltaSignatures(String filename) throws IOException {
+        Path path = fileManager.resolveFile(filename);
+        if (path == null) {
+            sendResponse("Gabim: File nuk ekziston");
             return;
         }
+        byte[] signatures = fileManager.getSignatures().get(path);
+        sendResponse(transferManager.startDownload(sender, client, ChunkSource.of(signatures),
+                nameOf(filename), 0));
+    }
 
-        String filename = parts[0].trim();
-        String base64Content = parts[1].trim();
+    // /delta_get <file> <madhësia e bllokut> <a-b,c,...>: dërgon vetëm blloqet e kërkuara, njëri pas tjetrit
+    private void handleDeltaGet(String args) throws IOException {
+        Matcher m = DELTA_RANGES.matcher(args);
+        if (!m.matches()) {
+            sendResponse("Format gabim: /delta_get <file> <blloku> <a-b,c,...>");
+            return;
+        }
+        Path path = fileManager.resolveFile(m.group(1));
+        if (path == null) {
+            sendResponse("Gabim: File nuk ekziston");
+            return;
+        }
 
-        if (filename.isEmpty() || base64Content.isEmpty()) {
-            sendResponse("Gabim: mungon emri i skedarit ose përmbajtja.");
+        ChunkSource source = transferManager.open(path);
+        long size = source.size();
+        long blockSize;
+        String[] ranges = m.group(3).split(",");
+        long[] offsets = new long[ranges.length];
+        long[] lengths = new long[ranges.length];
+        try {
+            blockSize = Long.parseLong(m.group(2));
+            if (blockSize != BlockSignatures.blockSizeFor(size)) {
+                source.close();
+                sendResponse("Gabim: file ka ndryshuar, merrni nënshkrimet përsëri");
+                return;
+            }
+            long blocks = (size + blockSize - 1) / blockSize;
+            for (int i = 0; i < ranges.length; i++) {
+                int dash = ranges[i].indexOf('-');
+                long first = Long.parseLong(dash < 0 ? ranges[i] : ranges[i].substring(0, dash));
+                long last = dash < 0 ? first : Long.parseLong(ranges[i].substring(dash + 1));
+                if (first > last || last >= blocks) throw new NumberFormatException(ranges[i]);
+                offsets[i] = first * blockSize;
+                lengths[i] = Math.min(size, (last + 1) * blockSize) - offsets[i];
+            }
+        } catch (NumberFormatException e) {
+            source.close();
+            sendResponse("Gabim: blloqe të pavlefshme " + e.getMessage());
             return;
         }
+        sendResponse(transferManager.startDownload(sender, client, ChunkSource.ranges(source, offsets, lengths),
+                nameOf(m.group(1)), 0));
+    }
 
-        if (!isValidFilename(filename)) {
-            sendResponse("Gabim: emri i skedarit është i pavlefshëm.");
+    // /codecs deflate,fast: zgjidhet i pari që njeh serveri; vlen për transferimet dhe faqet e mëpasshme
+    private void handleCodecs(String offered) throws IOException {
+        Compression.Codec codec = "off".equalsIgnoreCase(ServerConfig.COMPRESSION)
+                ? Compression.Codec.NONE : Compression.Codec.negotiate(offered);
+        client.setCodec(codec);
+        sendResponse("CODEC:" + codec.keyword());
+    }
+
+    private void handleUploadBegin(String args) throws IOException {
+        if (!client.isAdmin()) {
+            sendResponse("Vetëm admin mund të bëjë upload.");
             return;
         }
 
-        Path filePath = Path.of(ServerConfig.BASE_DIR, filename);
+        String[] parts = args.split("\\s+");
+        if (parts.length < 2 || parts.length > 3) {
+            sendResponse("Format gabim: /upload_begin <filename> <size> [sha256]");
+            return;
+        }
 
-        try {
-            Files.createDirectories(filePath.getParent());
-        } catch (IOException e) {
-            sendResponse("Gabim: nuk mund të krijohet direktoria: " + e.getMessage());
+        String filename = parts[0];
+        if (!isValidFilename(filename)) {
+            sendResponse("Gabim: emri i skedarit është i pavlefshëm.");
             return;
         }
 
-        byte[] data;
+        long size;
         try {
-            data = Base64.getDecoder().decode(base64Content.replaceAll("\\s+", ""));
-        } catch (IllegalArgumentException e) {
-            sendResponse("Gabim: përmbajtje Base64 e pavlefshme.");
+            size = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            size = -1;
+        }
+        if (size < 0) {
+            sendResponse("Gabim: madhësia e skedarit është e pavlefshme.");
             return;
         }
 
-        try (FileOutputStream fos = new FileOutputStream(filePath.toFile(), false)) {
-            fos.write(data);
-        } catch (IOException e) {
-            sendResponse("Gabim gjatë ruajtjes së skedarit: " + e.getMessage());
+        String digest = parts.length == 3 ? parts[2] : null;
+        if (digest != null && !Utils.isSha256(digest)) {
+            sendResponse("Gabim: SHA-256 duhet të jetë 64 shifra heksadecimale.");
             return;
         }
 
-        String response = "File u pranuar me sukses dhe u ruajt tek: " + filePath;
-        sendResponse(response);
+        sendResponse(transferManager.beginUpload(filename, size, digest));
+    }
 
-        if (trafficMonitor != null) {
-            trafficMonitor.recordMessageSent(
-                    response.length(),
-                    client.getAddress().getHostAddress());
+    private void handleUploadCommit(String args) throws IOException {
+        if (!client.isAdmin()) {
+            sendResponse("Vetëm admin mund të bëjë upload.");
+            return;
+        }
+
+        try {
+            sendResponse(transferManager.commitUpload(Integer.parseInt(args)));
+        } catch (NumberFormatException e) {
+            sendResponse("Format gabim: /upload_commit <id>");
         }
+    }
+
+    // trajtuesit kthejnë gabimet si tekst, prandaj ato njihen nga fillimi i përgjigjes
+    private static boolean isError(String response) {
+        return response.startsWith("Gabim") || response.startsWith("Format gabim")
+                || response.startsWith("Komandë e panjohur");
+    }
 
-        System.out.println("[UPLOAD] " + " - (" + client.getAddress().getHostAddress()
-                + ") → " + filename + " (" + data.length + " bytes)");
+    // emri që i dërgohet klientit në TRANSFER: rruga mund të jetë blob-i, ndaj merret nga emri i kërkuar
+    private static String nameOf(String filename) {
+        return Path.of(filename).getFileName().toString();
     }
 
     private boolean isValidFilename(String filename) {
@@ -166,18 +389,33 @@ public class ServerHandler implements Runnable {
             return false;
         if (filename.contains("..") || filename.contains("/") || filename.contains("\\"))
             return false;
-        if (filename.length() > 255)
+        if (filename.length() > 255 || FileManager.isReserved(filename))
             return false;
         return filename.matches("^[a-zA-Z0-9._\\-]+$");
     }
 
     private void sendResponse(String response) throws IOException {
+        sendResponse(response, ResponsePager.NO_CURSOR);
+    }
+
+    // përgjigjet që nuk nxënë në një datagram, ose që kanë vazhdim, dërgohen në faqe
+    private void sendResponse(String response, String cursor) throws IOException {
         byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
-        DatagramPacket dp = new DatagramPacket(bytes, bytes.length, packet.getAddress(), packet.getPort());
-        socket.send(dp);
+        long sent = bytes.length;
+        if (pager.fitsInOnePacket(bytes) && cursor.equals(ResponsePager.NO_CURSOR)) {
+            if (binaryOpcode >= 0) {
+                bytes = CommandFrame.response(binaryOpcode, binaryRequestId, bytes);
+                sent = bytes.length;
+            }
+            sender.send(ByteBuffer.wrap(bytes), client.getSocketAddress());
+        } else {
+            sent = pager.send(sender, client, bytes, cursor);
+        }
+        bytesOut += sent;
+        if (isError(response)) error = true;
 
         if (trafficMonitor != null) {
-            trafficMonitor.recordMessageSent(bytes.length, client.getAddress().getHostAddress());
+            trafficMonitor.recordMessageSent(sent, client);
         }
     }
 }
\ No newline at end of file
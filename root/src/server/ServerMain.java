@@ -1,78 +1,137 @@
 package server;
 
+import common.Command;
+import common.CommandFrame;
+import common.TransferFrame;
+
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public class ServerMain {
 
-    private static final ConcurrentHashMap<String, ClientHandler> clients = new ConcurrentHashMap<>();
+    private static final SessionTable clients = new SessionTable();
     private static final FileManager fileManager = new FileManager(ServerConfig.BASE_DIR);
     private static final TrafficMonitor trafficMonitor = new TrafficMonitor();
+    private static final RateLimits rateLimits = RateLimits.fromConfig();
+    private static final TransferManager transferManager = new TransferManager(trafficMonitor, fileManager, rateLimits);
+    private static final ResponsePager pager = new ResponsePager(ServerConfig.PAGE_SIZE, ServerConfig.PAGE_BATCH);
+    private static final RequestDispatcher dispatcher = RequestDispatcher.fromConfig();
+    private static final SessionWheel sessions = new SessionWheel(ServerConfig.SESSION_TICK_MS, ServerMain::onSessionExpired);
+    private static final ServerMetrics metrics = new ServerMetrics(dispatcher, transferManager);
 
-    private static final int MAX_CLIENTS = 5;
+    private static final byte[] SERVER_FULL = "Serveri është plot. Provo më vonë.".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TOO_MANY_REQUESTS = "Gabim: Shumë kërkesa. Provo më vonë.".getBytes(StandardCharsets.UTF_8);
 
     public static void main(String[] args) {
-        System.out.println("Serveri po starton në portin " + ServerConfig.PORT);
-
-        startClientCleanupTask();
+        System.out.println("Serveri po starton në portin " + ServerConfig.PORT
+                + " (direktoria: " + ServerConfig.BASE_DIR
+                + ", core: " + ServerConfig.SERVER_CORE
+                + ", dispatch: " + dispatcher.getMode().name().toLowerCase() + ")");
+
+        startMetricsEndpoint();
+
+        try {
+            if (ServerConfig.SERVER_CORE.equalsIgnoreCase("nio")) {
+                new NioServerCore(ServerConfig.PORT, ServerConfig.RECEIVE_LOOPS).run();
+            } else {
+                runBlocking();
+            }
+        } catch (IOException e) {
+            System.err.println("Gabim në server: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
+    private static void runBlocking() throws IOException {
         try (DatagramSocket socket = new DatagramSocket(ServerConfig.PORT)) {
+            socket.setReceiveBufferSize(ServerConfig.SOCKET_BUFFER_SIZE);
+            socket.setSendBufferSize(ServerConfig.SOCKET_BUFFER_SIZE);
+            PacketSender sender = PacketSender.of(socket);
             System.out.println("Serveri është gati dhe po pret klientët...");
 
             while (true) {
-                byte[] buffer = new byte[ServerConfig.BUFFER_SIZE];
+                byte[] buffer = new byte[ServerConfig.RECEIVE_BUFFER_SIZE];
                 DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                 socket.receive(packet);
+                IoStats.received(1, packet.getLength(), false);
 
-                String clientKey = packet.getAddress().getHostAddress() + ":" + packet.getPort();
-
-                if (!clients.containsKey(clientKey) && clients.size() >= MAX_CLIENTS) {
-                    byte[] msg = "Serveri është plot. Provo më vonë.".getBytes(StandardCharsets.UTF_8);
-                    socket.send(new DatagramPacket(msg, msg.length, packet.getAddress(), packet.getPort()));
-                    continue;
-                }
+                onPacket(sender, ByteBuffer.wrap(buffer, 0, packet.getLength()),
+                        (InetSocketAddress) packet.getSocketAddress(), null);
+            }
+        }
+    }
 
-                ClientHandler client = clients.computeIfAbsent(clientKey,
-                        k -> new ClientHandler(packet.getAddress(), packet.getPort()));
+    static void onPacket(PacketSender sender, ByteBuffer data, InetSocketAddress source, Runnable release)
+            throws IOException {
+        ClientHandler client = clients.getOrCreate(source, ServerConfig.MAX_CLIENTS, c -> sessions.schedule(c));
+        if (client == null) {
+            sender.send(ByteBuffer.wrap(SERVER_FULL), source);
+            if (release != null) release.run();
+            return;
+        }
 
-                client.updateActivity();
+        client.updateActivity();
 
-                String msg = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8).trim();
+        boolean frame = TransferFrame.isFrame(data);
+        // frame-t e transferimeve (ACK, UPLOAD) nuk kufizohen, përndryshe transferimet ngecin
+        if (!frame && !rateLimits.admitRequest(client)) {
+            byte[] reply = TOO_MANY_REQUESTS;
+            if (CommandFrame.isCommand(data)) {
+                reply = CommandFrame.response(CommandFrame.opcode(data), CommandFrame.requestId(data), reply);
+            }
+            sender.send(ByteBuffer.wrap(reply), source);
+            if (release != null) release.run();
+            return;
+        }
 
-                if (msg.equalsIgnoreCase("PING")) {
-                    byte[] pong = "PONG".getBytes(StandardCharsets.UTF_8);
-                    DatagramPacket pongPacket = new DatagramPacket(pong, pong.length, packet.getAddress(), packet.getPort());
-                    socket.send(pongPacket);
-                    System.out.println("Lidhje e re: " + client.getAddress().getHostAddress());
-                    trafficMonitor.recordMessageSent(pong.length, client.getClientKey());
-                    continue;
-                }
+        if (!frame && isPing(data)) {
+            byte[] pong = "PONG".getBytes(StandardCharsets.UTF_8);
+            if (CommandFrame.isCommand(data)) {
+                pong = CommandFrame.response(Command.PING.opcode(), CommandFrame.requestId(data), pong);
+            }
+            sender.send(ByteBuffer.wrap(pong), source);
+            System.out.println("Lidhje e re: " + client);
+            trafficMonitor.recordMessageSent(pong.length, client);
+            if (release != null) release.run();
+            return;
+        }
 
-                new Thread(new ServerHandler(socket, packet, client, fileManager, trafficMonitor, clients)).start();
+        ServerHandler handler = new ServerHandler(sender, data, client, fileManager, trafficMonitor,
+                clients, transferManager, pager, metrics, release);
+        if (!dispatcher.dispatch(handler)) {
+            if (release != null) release.run();
+            if (!frame) {
+                byte[] busy = "Serveri është i mbingarkuar. Provo më vonë.".getBytes(StandardCharsets.UTF_8);
+                sender.send(ByteBuffer.wrap(busy), source);
             }
+        }
+    }
+
+    private static boolean isPing(ByteBuffer data) {
+        if (CommandFrame.isCommand(data)) return CommandFrame.opcode(data) == Command.PING.opcode();
+        return data.remaining() <= 16
+                && StandardCharsets.UTF_8.decode(data.duplicate()).toString().trim().equalsIgnoreCase("PING");
+    }
 
+    private static void startMetricsEndpoint() {
+        if (ServerConfig.ADMIN_PORT <= 0) return;
+        try {
+            new MetricsEndpoint(ServerConfig.ADMIN_PORT, metrics).start();
         } catch (IOException e) {
-            System.err.println("Gabim në server: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("Pika e metrikave nuk u nis: " + e.getMessage());
         }
     }
 
-    private static void startClientCleanupTask() {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> {
-            clients.values().removeIf(client -> {
-                if (client.isTimedOut()) {
-                    System.out.println("Klienti " + client.getClientKey() + " u hoq për shkak të inaktivitetit.");
-                    return true;
-                }
-                return false;
-            });
-        }, 30, 30, TimeUnit.SECONDS);
+    private static void onSessionExpired(ClientHandler client) {
+        // klienti mund të ketë dërguar diçka mes kontrollit të rrotës dhe heqjes
+        if (!client.isTimedOut() || !clients.remove(client)) {
+            if (clients.get(client.getSocketAddress()) == client) sessions.schedule(client);
+            return;
+        }
+        System.out.println("Klienti " + client.getClientKey() + " u hoq për shkak të inaktivitetit.");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+package server;
+
+import common.Command;
+import common.Utils;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerMetrics {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_LABELS = {"p50", "p90", "p99", "p999"};
+
+    // indeksi 0 mban komandat e panjohura, indeksi i fundit frame-t binare të transferimeve
+    private final CommandStats[] stats;
+    private final int frameIndex;
+    private final RequestDispatcher dispatcher;
+    private final TransferManager transferManager;
+
+    public ServerMetrics(RequestDispatcher dispatcher, TransferManager transferManager) {
+        this.dispatcher = dispatcher;
+        this.transferManager = transferManager;
+        Command[] commands = Command.values();
+        this.frameIndex = commands.length + 1;
+        this.stats = new CommandStats[frameIndex + 1];
+        stats[0] = new CommandStats("unknown");
+        for (Command command : commands) {
+            stats[command.ordinal() + 1] = new CommandStats(command.keyword().replace("/", ""));
+        }
+        stats[frameIndex] = new CommandStats("transfer_frame");
+    }
+
+    public void record(Command command, long nanos, long bytesIn, long bytesOut, boolean error) {
+        record(stats[command != null ? command.ordinal() + 1 : 0], nanos, bytesIn, bytesOut, error);
+    }
+
+    public void recordFrame(long nanos, long bytesIn, long bytesOut) {
+        record(stats[frameIndex], nanos, bytesIn, bytesOut, false);
+    }
+
+    private static void record(CommandStats s, long nanos, long bytesIn, long bytesOut, boolean error) {
+        s.requests.increment();
+        if (error) s.errors.increment();
+        s.bytesIn.add(bytesIn);
+        s.bytesOut.add(bytesOut);
+        s.latency.record(nanos);
+    }
+
+    public String getStats() {
+        StringBuilder sb = new StringBuilder(">> Komandat (latenca në µs):\n");
+        sb.append(String.format(" %-14s %9s %7s %9s %9s %9s %9s %9s %10s\n",
+                "komanda", "kërkesa", "gabime", "p50", "p90", "p99", "p999", "max", "dërguar"));
+        for (CommandStats s : stats) {
+            long requests = s.requests.sum();
+            if (requests == 0) continue;
+            sb.append(String.format(" %-14s %9d %7d", s.name, requests, s.errors.sum()));
+            for (double p : PERCENTILES) {
+                sb.append(String.format(Locale.ROOT, " %9.1f", s.latency.percentile(p) / 1000.0));
+            }
+            sb.append(String.format(Locale.ROOT, " %9.1f %10s\n",
+                    s.latency.max() / 1000.0, Utils.formatFileSize(s.bytesOut.sum())));
+        }
+        sb.append(">> Dispatch (").append(dispatcher.getMode().name().toLowerCase()).append("): ")
+                .append("në radhë ").append(dispatcher.queueDepth())
+                .append(" | aktive ").append(dispatcher.activeCount())
+                .append(" | refuzuar ").append(dispatcher.rejectedCount())
+                .append(" | transferime aktive ").append(transferManager.activeTransfers()).append("\n");
+        return sb.toString();
+    }
+
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# TYPE udp_requests_total counter\n");
+        for (CommandStats s : stats) {
+            sb.append("udp_requests_total{command=\"").append(s.name).append("\"} ").append(s.requests.sum()).append('\n');
+        }
+        sb.append("# TYPE udp_request_errors_total counter\n");
+        for (CommandStats s : stats) {
+            sb.append("udp_request_errors_total{command=\"").append(s.name).append("\"} ").append(s.errors.sum()).append('\n');
+        }
+        sb.append("# TYPE udp_request_bytes_total counter\n");
+        for (CommandStats s : stats) {
+            sb.append("udp_request_bytes_total{command=\"").append(s.name).append("\",direction=\"in\"} ")
+                    .append(s.bytesIn.sum()).append('\n');
+            sb.append("udp_request_bytes_total{command=\"").append(s.name).append("\",direction=\"out\"} ")
+                    .append(s.bytesOut.sum()).append('\n');
+        }
+        sb.append("# TYPE udp_request_latency_seconds summary\n");
+        for (CommandStats s : stats) {
+            for (double p : PERCENTILES) {
+                sb.append(String.format(Locale.ROOT, "udp_request_latency_seconds{command=\"%s\",quantile=\"%s\"} %.9f\n",
+                        s.name, p / 100.0, s.latency.percentile(p) / 1e9));
+            }
+            sb.append("udp_request_latency_seconds_count{command=\"").append(s.name).append("\"} ")
+                    .append(s.latency.count()).append('\n');
+        }
+        sb.append("# TYPE udp_dispatch_queue_depth gauge\n");
+        sb.append("udp_dispatch_queue_depth ").append(dispatcher.queueDepth()).append('\n');
+        sb.append("# TYPE udp_dispatch_active gauge\n");
+        sb.append("udp_dispatch_active ").append(dispatcher.activeCount()).append('\n');
+        sb.append("# TYPE udp_dispatch_rejected_total counter\n");
+        sb.append("udp_dispatch_rejected_total ").append(dispatcher.rejectedCount()).append('\n');
+        sb.append("# TYPE udp_transfers_active gauge\n");
+        sb.append("udp_transfers_active ").append(transferManager.activeTransfers()).append('\n');
+        sb.append("# TYPE udp_syscalls_total counter\n");
+        sb.append("udp_syscalls_total{call=\"select\"} ").append(IoStats.selectCount()).append('\n');
+        sb.append("udp_syscalls_total{call=\"receive\"} ").append(IoStats.receiveCount()).append('\n');
+        sb.append("udp_syscalls_total{call=\"send\"} ").append(IoStats.sendCount()).append('\n');
+        sb.append("# TYPE udp_send_dropped_total counter\n");
+        sb.append("udp_send_dropped_total ").append(IoStats.sendDropCount()).append('\n');
+        sb.append("# TYPE udp_io_bytes_total counter\n");
+        sb.append("udp_io_bytes_total{direction=\"in\"} ").append(IoStats.receivedBytes()).append('\n');
+        sb.append("udp_io_bytes_total{direction=\"out\"} ").append(IoStats.sentBytes()).append('\n');
+        return sb.toString();
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"commands\": {\n");
+        for (int i = 0; i < stats.length; i++) {
+            CommandStats s = stats[i];
+            sb.append("    \"").append(s.name).append("\": {\"requests\": ").append(s.requests.sum())
+                    .append(", \"errors\": ").append(s.errors.sum())
+                    .append(", \"bytesIn\": ").append(s.bytesIn.sum())
+                    .append(", \"bytesOut\": ").append(s.bytesOut.sum());
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                sb.append(", \"").append(PERCENTILE_LABELS[p]).append("Nanos\": ")
+                        .append(s.latency.percentile(PERCENTILES[p]));
+            }
+            sb.append(", \"maxNanos\": ").append(s.latency.max()).append('}')
+                    .append(i < stats.length - 1 ? ",\n" : "\n");
+        }
+        sb.append("  },\n");
+        sb.append("  \"dispatch\": {\"mode\": \"").append(dispatcher.getMode().name().toLowerCase())
+                .append("\", \"queueDepth\": ").append(dispatcher.queueDepth())
+                .append(", \"active\": ").append(dispatcher.activeCount())
+                .append(", \"rejected\": ").append(dispatcher.rejectedCount()).append("},\n");
+        sb.append("  \"io\": {\"batch\": ").append(ServerConfig.IO_BATCH)
+                .append(", \"selects\": ").append(IoStats.selectCount())
+                .append(", \"receives\": ").append(IoStats.receiveCount())
+                .append(", \"sends\": ").append(IoStats.sendCount())
+                .append(", \"sendDrops\": ").append(IoStats.sendDropCount())
+                .append(", \"bytesIn\": ").append(IoStats.receivedBytes())
+                .append(", \"bytesOut\": ").append(IoStats.sentBytes()).append("},\n");
+        sb.append("  \"activeTransfers\": ").append(transferManager.activeTransfers()).append('\n');
+        return sb.append("}\n").toString();
+    }
+
+    private static class CommandStats {
+        private final String name;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        CommandStats(String name) {
+            this.name = name;
+        }
+    }
+}
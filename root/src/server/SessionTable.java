@@ -0,0 +1,207 @@
+package server;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+// tabelë me adresim të hapur (linear probing) për sesionet e klientëve; çelësi është adresa si dy long
+// (IPv4 në formën ::ffff:a.b.c.d) plus porti, kështu kërkimi për çdo paketë nuk krijon String
+public class SessionTable {
+    private static final long IPV4_PREFIX = 0xFFFFL << 32;
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table = new Table(64);
+    private int size;
+
+    public ClientHandler get(InetSocketAddress source) {
+        InetAddress address = source.getAddress();
+        if (address instanceof Inet4Address) return get(0, ipv4(address), source.getPort());
+        byte[] bytes = address.getAddress();
+        return get(word(bytes, 0), word(bytes, 8), source.getPort());
+    }
+
+    private ClientHandler get(long hi, long lo, int port) {
+        long stamp = lock.tryOptimisticRead();
+        ClientHandler found = table.find(hi, lo, port);
+        if (lock.validate(stamp)) return found;
+
+        stamp = lock.readLock();
+        try {
+            return table.find(hi, lo, port);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // kthen null kur klienti është i ri dhe tabela ka arritur kufirin
+    public ClientHandler getOrCreate(InetSocketAddress source, int limit, Consumer<ClientHandler> onCreate) {
+        InetAddress address = source.getAddress();
+        int port = source.getPort();
+        long hi = 0;
+        long lo;
+        if (address instanceof Inet4Address) {
+            lo = ipv4(address);
+        } else {
+            byte[] bytes = address.getAddress();
+            hi = word(bytes, 0);
+            lo = word(bytes, 8);
+        }
+
+        ClientHandler existing = get(hi, lo, port);
+        if (existing != null) return existing;
+
+        long stamp = lock.writeLock();
+        try {
+            existing = table.find(hi, lo, port);
+            if (existing != null) return existing;
+            if (size >= limit) return null;
+
+            ClientHandler created = new ClientHandler(address, port);
+            if ((size + 1) * 2 > table.capacity()) table = table.resize(table.capacity() * 2);
+            table.insert(hi, lo, port, created);
+            size++;
+            if (onCreate != null) onCreate.accept(created);
+            return created;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean remove(ClientHandler client) {
+        InetAddress address = client.getAddress();
+        long hi = 0;
+        long lo;
+        if (address instanceof Inet4Address) {
+            lo = ipv4(address);
+        } else {
+            byte[] bytes = address.getAddress();
+            hi = word(bytes, 0);
+            lo = word(bytes, 8);
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (!table.remove(hi, lo, client.getPort(), client)) return false;
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<ClientHandler> values() {
+        long stamp = lock.readLock();
+        try {
+            List<ClientHandler> result = new ArrayList<>(size);
+            for (ClientHandler client : table.values) {
+                if (client != null) result.add(client);
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Inet4Address.hashCode() është vetë adresa, kështu IPv4 lexohet pa kopjuar byte[]
+    private static long ipv4(InetAddress address) {
+        return IPV4_PREFIX | (address.hashCode() & 0xFFFFFFFFL);
+    }
+
+    private static long word(byte[] bytes, int from) {
+        long value = 0;
+        for (int i = from; i < from + 8; i++) value = (value << 8) | (bytes[i] & 0xFF);
+        return value;
+    }
+
+    private static class Table {
+        private final long[] his;
+        private final long[] los;
+        private final int[] ports;
+        private final ClientHandler[] values;
+        private final int mask;
+
+        Table(int capacity) {
+            his = new long[capacity];
+            los = new long[capacity];
+            ports = new int[capacity];
+            values = new ClientHandler[capacity];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        // numri i hapave kufizohet që një lexim optimist gjatë një ndryshimi të mos ngecë
+        ClientHandler find(long hi, long lo, int port) {
+            int slot = slot(hi, lo, port);
+            for (int probes = 0; probes <= mask; probes++) {
+                ClientHandler value = values[slot];
+                if (value == null) return null;
+                if (los[slot] == lo && his[slot] == hi && ports[slot] == port) return value;
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        void insert(long hi, long lo, int port, ClientHandler client) {
+            int slot = slot(hi, lo, port);
+            while (values[slot] != null) slot = (slot + 1) & mask;
+            his[slot] = hi;
+            los[slot] = lo;
+            ports[slot] = port;
+            values[slot] = client;
+        }
+
+        // fshirje me zhvendosje prapa, pa varre, që zinxhirët e kërkimit të mbeten të shkurtër
+        boolean remove(long hi, long lo, int port, ClientHandler client) {
+            int slot = slot(hi, lo, port);
+            while (values[slot] != null) {
+                if (values[slot] == client) break;
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == null) return false;
+
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (values[next] != null) {
+                int home = slot(his[next], los[next], ports[next]);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    his[hole] = his[next];
+                    los[hole] = los[next];
+                    ports[hole] = ports[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            values[hole] = null;
+            return true;
+        }
+
+        Table resize(int capacity) {
+            Table bigger = new Table(capacity);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) bigger.insert(his[i], los[i], ports[i], values[i]);
+            }
+            return bigger;
+        }
+
+        private int slot(long hi, long lo, int port) {
+            long h = (lo * 0x9E3779B97F4A7C15L) ^ (hi * 0xC2B2AE3D27D4EB4FL) ^ port;
+            return (int) (h ^ (h >>> 29)) & mask;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// rrotë kohore hierarkike për skadimin e sesioneve: updateActivity vetëm shkruan orën, rrota e
+// kontrollon klientin kur i vjen kova dhe e rivendos nëse ka qenë aktiv në ndërkohë
+public final class SessionWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 3;
+
+    private final long tickMs;
+    private final Consumer<ClientHandler> onExpired;
+    private final ConcurrentLinkedQueue<ClientHandler> pending = new ConcurrentLinkedQueue<>();
+    private final Bucket[][] wheel = new Bucket[LEVELS][SLOTS];
+    private final ScheduledExecutorService scheduler;
+    private long currentTick;
+    private int size;
+
+    public SessionWheel(long tickMs, Consumer<ClientHandler> onExpired) {
+        this.tickMs = tickMs;
+        this.onExpired = onExpired;
+        for (Bucket[] level : wheel) {
+            for (int i = 0; i < SLOTS; i++) level[i] = new Bucket(new ArrayList<>());
+        }
+        this.currentTick = CoarseClock.millis() / tickMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(() -> advance(CoarseClock.millis()), tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    // thirret nga thread-et e marrjes; vendosja në rrotë bëhet nga thread-i i rrotës
+    public void schedule(ClientHandler client) {
+        pending.add(client);
+    }
+
+    public synchronized int size() {
+        return size + pending.size();
+    }
+
+    synchronized void advance(long nowMs) {
+        ClientHandler added;
+        while ((added = pending.poll()) != null) {
+            place(added);
+            size++;
+        }
+
+        long target = nowMs / tickMs;
+        while (currentTick < target) {
+            currentTick++;
+            cascade(1);
+            List<ClientHandler> slot = wheel[0][(int) (currentTick & (SLOTS - 1))].clients;
+            if (slot.isEmpty()) continue;
+
+            List<ClientHandler> due = new ArrayList<>(slot);
+            slot.clear();
+            for (ClientHandler client : due) {
+                if (client.expiresAt() <= nowMs) {
+                    size--;
+                    onExpired.accept(client);
+                } else {
+                    place(client);
+                }
+            }
+        }
+    }
+
+    // kur niveli më i ulët mbaron një rrotullim, kova e radhës e nivelit sipër zbret poshtë
+    private void cascade(int level) {
+        if (level >= LEVELS || (currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) return;
+        cascade(level + 1);
+        List<ClientHandler> slot = wheel[level][(int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1))].clients;
+        if (slot.isEmpty()) return;
+        List<ClientHandler> moved = new ArrayList<>(slot);
+        slot.clear();
+        for (ClientHandler client : moved) place(client);
+    }
+
+    private void place(ClientHandler client) {
+        long expiryTick = Math.max(currentTick + 1, (client.expiresAt() + tickMs - 1) / tickMs);
+        long delta = expiryTick - currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < (1L << (SLOT_BITS * (level + 1))) || level == LEVELS - 1) {
+                long tick = Math.min(expiryTick, currentTick + (1L << (SLOT_BITS * (level + 1))) - 1);
+                wheel[level][(int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1))].clients.add(client);
+                return;
+            }
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // mbështjellës që tabela e kovave të jetë e tipizuar, pa krijim vargu gjenerik
+    private record Bucket(List<ClientHandler> clients) {}
+}
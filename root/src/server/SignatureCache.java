@@ -0,0 +1,70 @@
+package server;
+
+import common.BlockSignatures;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// nënshkrimet e koduara të blloqeve sipas file-it; vlejnë sa kohë madhësia dhe koha e modifikimit nuk ndryshojnë
+public class SignatureCache {
+    private final int maxEntries;
+    private final LinkedHashMap<Path, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong computed = new AtomicLong();
+
+    public SignatureCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+                return size() > SignatureCache.this.maxEntries;
+            }
+        };
+    }
+
+    public byte[] get(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+                hits.incrementAndGet();
+                return cached.encoded;
+            }
+        }
+
+        byte[] encoded;
+        try (FileChannel channel = FileChannel.open(key, StandardOpenOption.READ)) {
+            encoded = BlockSignatures.compute(channel, BlockSignatures.blockSizeFor(size)).encode();
+        }
+        computed.incrementAndGet();
+        if (Files.getLastModifiedTime(key).toMillis() == lastModified) {
+            synchronized (this) {
+                entries.put(key, new Entry(size, lastModified, encoded));
+            }
+        }
+        return encoded;
+    }
+
+    public synchronized void invalidate(Path path) {
+        entries.remove(path.toAbsolutePath().normalize());
+    }
+
+    public synchronized String getStats() {
+        return " - Nënshkrimet delta: " + entries.size() + " file | Hits: " + hits.get()
+                + " | Të llogaritura: " + computed.get() + "\n";
+    }
+
+    private record Entry(long size, long lastModified, byte[] encoded) {}
+}
@@ -0,0 +1,44 @@
+package server;
+
+// kovë me tokena (bytes ose kërkesa): mbushet me ratePerSecond deri në capacity; consume lejon borxh,
+// kështu një chunk i nisur nuk ndalet në mes dhe borxhi shlyhet nga mbushja e radhës
+public class TokenBucket {
+    private final long ratePerSecond;
+    private final long capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(long ratePerSecond, long capacity) {
+        this.ratePerSecond = ratePerSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized boolean hasTokens() {
+        refill();
+        return tokens > 0;
+    }
+
+    public synchronized boolean tryConsume(long amount) {
+        refill();
+        if (tokens < amount) return false;
+        tokens -= amount;
+        return true;
+    }
+
+    public synchronized void consume(long amount) {
+        refill();
+        tokens -= amount;
+    }
+
+    public long getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerSecond / 1e9);
+        lastRefill = now;
+    }
+}
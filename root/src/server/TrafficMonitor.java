@@ -1,106 +1,90 @@
 package server;
 
 import common.Utils;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 public class TrafficMonitor {
-    private final AtomicLong totalBytesReceived = new AtomicLong(0);
-    private final AtomicLong totalBytesSent = new AtomicLong(0);
-    private final AtomicLong totalMessages = new AtomicLong(0);
-    private final ConcurrentHashMap<String, ClientLogInfo> clientStats = new ConcurrentHashMap<>();
+    private final LongAdder totalBytesReceived = new LongAdder();
+    private final LongAdder totalBytesSent = new LongAdder();
+    private final LongAdder totalMessages = new LongAdder();
 
     public TrafficMonitor() {}
 
-    public void recordMessageReceived(long bytes, String clientKey) {
-        totalBytesReceived.addAndGet(bytes);
-        totalMessages.incrementAndGet();
-        updateClientStats(clientKey, bytes, true);
+    // numëruesit e klientit mbahen te ClientHandler, kështu nuk ka kërkim në map për çdo paketë
+    public void recordMessageReceived(long bytes, ClientHandler client) {
+        totalBytesReceived.add(bytes);
+        totalMessages.increment();
+        client.getTraffic().addReceived(bytes);
     }
 
-    public void recordMessageSent(long bytes, String clientKey) {
-        totalBytesSent.addAndGet(bytes);
-        totalMessages.incrementAndGet();
-        updateClientStats(clientKey, bytes, false);
+    public void recordMessageSent(long bytes, ClientHandler client) {
+        totalBytesSent.add(bytes);
+        totalMessages.increment();
+        client.getTraffic().addSent(bytes);
     }
 
-    private void updateClientStats(String clientKey, long bytes, boolean received) {
-        clientStats.compute(clientKey, (k, info) -> {
-            if (info == null) info = new ClientLogInfo(clientKey);
-            if (received) info.addReceived(bytes);
-            else info.addSent(bytes);
-            return info;
-        });
-    }
+    private static final int LISTED_CLIENTS = 50;
+
+    public String getStats(SessionTable sessions) {
+        List<ClientHandler> clients = sessions.values();
+        long received = totalBytesReceived.sum();
+        long sent = totalBytesSent.sum();
 
-    public String getStats(ConcurrentHashMap<String, ClientHandler> clients) {
         StringBuilder sb = new StringBuilder();
         sb.append("=== STATISTIKA E SERVERIT ===\n");
         sb.append("Lidhje aktive: ").append(clients.size()).append("\n");
-        sb.append("Mesazhe totale: ").append(totalMessages.get()).append("\n");
-        sb.append("Trafik total: ").append(Utils.formatFileSize(totalBytesReceived.get() + totalBytesSent.get())).append("\n");
-        sb.append("Trafik i pranuar: ").append(Utils.formatFileSize(totalBytesReceived.get())).append("\n");
-        sb.append("Trafik i dërguar: ").append(Utils.formatFileSize(totalBytesSent.get())).append("\n");
+        sb.append("Mesazhe totale: ").append(totalMessages.sum()).append("\n");
+        sb.append("Trafik total: ").append(Utils.formatFileSize(received + sent)).append("\n");
+        sb.append("Trafik i pranuar: ").append(Utils.formatFileSize(received)).append("\n");
+        sb.append("Trafik i dërguar: ").append(Utils.formatFileSize(sent)).append("\n");
         sb.append("Koha: ").append(Utils.getCurrentTimestamp()).append("\n");
         sb.append(">> Detaje për klientët:\n");
 
         if (clients.isEmpty()) {
             sb.append("Asnjë klient aktiv.\n");
         } else {
-            for (ClientHandler client : clients.values()) {
-                String clientKey = client.getClientKey();
-                System.out.println("client key: " + clientKey);
-                ClientLogInfo info = clientStats.get(clientKey);
-                long recv = info != null ? info.getBytesReceived() : 0;
-                long sent = info != null ? info.getBytesSent() : 0;
-                int msgs = info != null ? info.getMessages() : 0;
-
+            for (ClientHandler client : clients.subList(0, Math.min(clients.size(), LISTED_CLIENTS))) {
+                ClientTraffic traffic = client.getTraffic();
                 sb.append(String.format(" - %s | Pranuar: %s | Dërguar: %s | Mesazhe: %d\n",
-                        clientKey,
-                        Utils.formatFileSize(recv),
-                        Utils.formatFileSize(sent),
-                        msgs));
+                        client.getClientKey(),
+                        Utils.formatFileSize(traffic.getBytesReceived()),
+                        Utils.formatFileSize(traffic.getBytesSent()),
+                        traffic.getMessages()));
+            }
+            if (clients.size() > LISTED_CLIENTS) {
+                sb.append(" ... dhe ").append(clients.size() - LISTED_CLIENTS).append(" klientë të tjerë\n");
             }
         }
         sb.append("========================================\n");
         return sb.toString();
     }
 
-    private static class ClientLogInfo {
-        private final String clientKey;
-        private long bytesReceived;
-        private long bytesSent;
-        private int messages;
+    public static class ClientTraffic {
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder messages = new LongAdder();
 
-        public ClientLogInfo(String clientKey) {
-            this.clientKey = clientKey;
+        void addReceived(long bytes) {
+            bytesReceived.add(bytes);
+            messages.increment();
         }
 
-        public synchronized void addReceived(long bytes) {
-            this.bytesReceived += bytes;
-            this.messages++;
-        }
-
-        public synchronized void addSent(long bytes) {
-            this.bytesSent += bytes;
-            this.messages++;
+        void addSent(long bytes) {
+            bytesSent.add(bytes);
+            messages.increment();
         }
 
         public long getBytesReceived() {
-            return bytesReceived;
+            return bytesReceived.sum();
         }
 
         public long getBytesSent() {
-            return bytesSent;
-        }
-
-        public int getMessages() {
-            return messages;
+            return bytesSent.sum();
         }
 
-        @Override
-        public String toString() {
-            return clientKey;
+        public long getMessages() {
+            return messages.sum();
         }
     }
-}
\ No newline at end of file
+}
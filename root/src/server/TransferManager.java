@@ -0,0 +1,823 @@
+package server;
+
+import common.Compression;
+import common.Parity;
+import common.ReceiveWindow;
+import common.SendWindow;
+import common.TransferFrame;
+import common.Utils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TransferManager {
+    private final ConcurrentHashMap<Integer, DownloadSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, UploadSession> uploads = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, UploadSession> uploadsByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, FanoutSession> fanouts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, FanoutSession> fanoutsByKey = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final TrafficMonitor trafficMonitor;
+    private final Path uploadDir;
+    private final FileManager fileManager;
+    private final ContentCache contentCache;
+    private final MappedFileCache mappedFiles;
+    private final ScheduledExecutorService scheduler;
+    private final RateLimits rateLimits;
+    private final LongAdder lossEvents = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder checksumFailures = new LongAdder();
+    private final LongAdder digestMismatches = new LongAdder();
+    private final LongAdder fanoutMulticastBytes = new LongAdder();
+    private final LongAdder fanoutRepairBytes = new LongAdder();
+    private final LongAdder fanoutReceivers = new LongAdder();
+    private final LongAdder fanoutDeliveredBytes = new LongAdder();
+    private final LongAdder parityFrames = new LongAdder();
+    private final LongAdder parityBytes = new LongAdder();
+    private final LongAdder parityRecovered = new LongAdder();
+    private final int fecMode = Parity.parseMode(ServerConfig.FEC);
+    private final WriteBehind writeBehind = new WriteBehind(ServerConfig.WRITER_THREADS, ServerConfig.WRITE_QUEUE,
+            ServerConfig.CHUNK_SIZE, WriteBehind.Durability.parse(ServerConfig.FSYNC), ServerConfig.FSYNC_INTERVAL_MS);
+    private InetSocketAddress fanoutGroup;
+    private PacketSender multicastSender;
+    private boolean multicastUnavailable;
+
+    public TransferManager(TrafficMonitor trafficMonitor, FileManager fileManager) {
+        this(trafficMonitor, fileManager, null);
+    }
+
+    public TransferManager(TrafficMonitor trafficMonitor, FileManager fileManager, RateLimits rateLimits) {
+        this(trafficMonitor, fileManager, ServerConfig.MMAP_DOWNLOADS, rateLimits);
+    }
+
+    public TransferManager(TrafficMonitor trafficMonitor, FileManager fileManager, boolean memoryMapped) {
+        this(trafficMonitor, fileManager, memoryMapped, null);
+    }
+
+    public TransferManager(TrafficMonitor trafficMonitor, FileManager fileManager, boolean memoryMapped,
+                           RateLimits rateLimits) {
+        this.trafficMonitor = trafficMonitor;
+        this.rateLimits = rateLimits;
+        this.fileManager = fileManager;
+        this.contentCache = fileManager != null ? fileManager.getContentCache() : null;
+        this.mappedFiles = memoryMapped ? new MappedFileCache(ServerConfig.MMAP_CACHE_BYTES) : null;
+        this.uploadDir = Path.of(ServerConfig.BASE_DIR, ".uploads");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "transfer-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::checkTimeouts,
+                ServerConfig.RETRANSMIT_MS, ServerConfig.RETRANSMIT_MS / 2, TimeUnit.MILLISECONDS);
+        // grupet fan-out nuk kanë ACK nga një marrës i vetëm që t'i shtyjë, ritmi mbahet nga timer-i
+        scheduler.scheduleAtFixedRate(this::pumpFanouts, FANOUT_TICK_MS, FANOUT_TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static final int FANOUT_TICK_MS = 5;
+
+    public String startDownload(PacketSender sender, ClientHandler client, Path path, String filename)
+            throws IOException {
+        return startDownload(sender, client, path, filename, 0);
+    }
+
+    // rateBytesPerSecond 0 do të thotë pa kufi
+    public String startDownload(PacketSender sender, ClientHandler client, Path path, String filename,
+                                long rateBytesPerSecond) throws IOException {
+        String digest = fileManager != null ? fileManager.knownDigest(path) : null;
+        return startDownload(sender, client, open(path), filename, rateBytesPerSecond, digest);
+    }
+
+    public String startDownload(PacketSender sender, ClientHandler client, ChunkSource source, String filename,
+                                long rateBytesPerSecond) throws IOException {
+        return startDownload(sender, client, source, filename, rateBytesPerSecond, null);
+    }
+
+    // burimi mbyllet nga sesioni kur transferimi përfundon; digest-i (SHA-256) i lejon klientit të verifikojë
+    // file-in e plotë, "-" kur nuk dihet pa e lexuar file-in
+    public String startDownload(PacketSender sender, ClientHandler client, ChunkSource source, String filename,
+                                long rateBytesPerSecond, String digest) throws IOException {
+        long size = source.size();
+        int chunkSize = ServerConfig.CHUNK_SIZE;
+        int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+        int window = windowFor(chunkSize);
+        int id = nextId.getAndIncrement();
+
+        Compression.Codec codec = Compression.Codec.NONE;
+        if (chunkCount == 0) {
+            source.close();
+        } else {
+            TokenBucket pacer = rateBytesPerSecond > 0
+                    ? new TokenBucket(rateBytesPerSecond, RateLimits.byteBurst(rateBytesPerSecond)) : null;
+            codec = codecFor(client.getCodec(), source, chunkSize, chunkCount);
+            sessions.put(id, new DownloadSession(id, sender, client, source, chunkSize, chunkCount, window,
+                    pacer, codec));
+        }
+
+        System.out.println("[DOWNLOAD] " + client.getClientKey() + " → " + filename
+                + " (" + size + " bytes, " + chunkCount + " chunks"
+                + (rateBytesPerSecond > 0 ? ", " + rateBytesPerSecond + " B/s" : "")
+                + (codec != Compression.Codec.NONE ? ", " + codec.keyword() : "") + ")");
+        return transferHeader(id, size, chunkSize, chunkCount, window, digest, filename);
+    }
+
+    private static String transferHeader(int id, long size, int chunkSize, int chunkCount, int window,
+                                         String digest, String filename) {
+        return "TRANSFER:" + id + ":" + size + ":" + chunkSize + ":" + chunkCount + ":"
+                + window + ":" + (digest != null ? digest : "-") + ":" + filename;
+    }
+
+    // shkarkimet e të njëjtit file (rrugë, madhësi, kohë modifikimi) që mbivendosen bashkohen në një sesion
+    // multicast; përgjigjja "MULTICAST:<grupi>:<porti>:TRANSFER:..." i tregon klientit ku të dëgjojë.
+    // Pa grup të përdorshëm bëhet shkarkim i zakonshëm
+    public String startFanout(PacketSender sender, ClientHandler client, Path path, String filename)
+            throws IOException {
+        PacketSender group = multicastSender();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        if (group == null || attrs.size() == 0) return startDownload(sender, client, path, filename);
+
+        String key = path.toAbsolutePath() + ":" + attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+        FanoutSession session;
+        boolean created = false;
+        synchronized (fanoutsByKey) {
+            session = fanoutsByKey.get(key);
+            if (session == null || !session.join(client, sender)) {
+                int chunkSize = ServerConfig.CHUNK_SIZE;
+                session = new FanoutSession(nextId.getAndIncrement(), key, open(path), chunkSize, windowFor(chunkSize),
+                        group, fanoutGroup, ServerConfig.FANOUT_BYTES_PER_SEC);
+                session.join(client, sender);
+                fanoutsByKey.put(key, session);
+                fanouts.put(session.id, session);
+                created = true;
+            }
+        }
+
+        System.out.println("[FANOUT] " + client.getClientKey() + " → " + filename + " (" + session.size + " bytes, "
+                + (created ? "sesion i ri " + session.id : session.memberCount() + " marrës në sesionin " + session.id)
+                + ")");
+        return "MULTICAST:" + fanoutGroup.getAddress().getHostAddress() + ":" + fanoutGroup.getPort() + ":"
+                + transferHeader(session.id, session.size, session.chunkSize, session.chunkCount, session.window,
+                fileManager != null ? fileManager.knownDigest(path) : null, filename);
+    }
+
+    // kanali i grupit hapet herën e parë që kërkohet; një gabim në konfigurim e çaktivizon fan-out-in
+    private synchronized PacketSender multicastSender() {
+        if (multicastSender != null || multicastUnavailable) return multicastSender;
+        multicastUnavailable = true;
+        if ("off".equalsIgnoreCase(ServerConfig.FANOUT_GROUP)) return null;
+        try {
+            String spec = ServerConfig.FANOUT_GROUP;
+            int colon = spec.lastIndexOf(':');
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(spec.substring(0, colon)),
+                    Integer.parseInt(spec.substring(colon + 1)));
+            if (!address.getAddress().isMulticastAddress()) {
+                throw new IOException(spec + " nuk është adresë multicast");
+            }
+            DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, ServerConfig.SOCKET_BUFFER_SIZE);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, ServerConfig.FANOUT_TTL);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            if (!ServerConfig.FANOUT_INTERFACE.isEmpty()) {
+                NetworkInterface nif = NetworkInterface.getByName(ServerConfig.FANOUT_INTERFACE);
+                if (nif == null) throw new IOException("Ndërfaqja " + ServerConfig.FANOUT_INTERFACE + " nuk ekziston");
+                channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+            }
+            fanoutGroup = address;
+            multicastSender = PacketSender.of(channel);
+            multicastUnavailable = false;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Fan-out multicast nuk u nis, /fanout bën shkarkime të zakonshme: " + e.getMessage());
+        }
+        return multicastSender;
+    }
+
+    public ChunkSource open(Path path) throws IOException {
+        ChunkSource source = contentCache != null ? contentCache.get(path) : null;
+        if (source == null) {
+            source = mappedFiles != null ? mappedFiles.get(path)
+                    : ChunkSource.of(FileChannel.open(path, StandardOpenOption.READ));
+        }
+        return source;
+    }
+
+    // mostra është chunk-u i parë, i mesit dhe i fundit; file-t e pakompresueshëm dërgohen si janë
+    private static Compression.Codec codecFor(Compression.Codec requested, ChunkSource source, int chunkSize,
+                                              int chunkCount) throws IOException {
+        if (requested == Compression.Codec.NONE) return requested;
+        ByteBuffer sample = ByteBuffer.allocate(3 * chunkSize);
+        int length = 0;
+        int previous = -1;
+        for (int seq : new int[]{0, chunkCount / 2, chunkCount - 1}) {
+            if (seq == previous) continue;
+            long position = (long) seq * chunkSize;
+            int n = (int) Math.min(chunkSize, source.size() - position);
+            source.copyTo(sample, length, position, n);
+            length += n;
+            previous = seq;
+        }
+        sample.clear().limit(length);
+        return Compression.worthCompressing(requested, sample) ? requested : Compression.Codec.NONE;
+    }
+
+    // dritarja mbahet nën gjysmën e buffer-it të socket-it që të mos humbasin paketa në marrës
+    static int windowFor(int chunkSize) {
+        int byBuffer = ServerConfig.SOCKET_BUFFER_SIZE / 2 / (chunkSize + TransferFrame.DATA_HEADER_SIZE);
+        return Math.max(16, Math.min(ServerConfig.WINDOW_SIZE, byBuffer));
+    }
+
+    public String beginUpload(String filename, long size) throws IOException {
+        return beginUpload(filename, size, null);
+    }
+
+    // me digest, upload-i vazhdon vetëm për të njëjtën përmbajtje dhe verifikohet para se të ruhet
+    public String beginUpload(String filename, long size, String digest) throws IOException {
+        int chunkSize = ServerConfig.CHUNK_SIZE;
+        int window = windowFor(chunkSize);
+        String key = filename + ":" + size + (digest != null ? ":" + digest : "");
+
+        UploadSession existing = uploadsByName.get(key);
+        if (existing != null) {
+            long offset = existing.resumeOffset();
+            System.out.println("[UPLOAD] " + filename + " vazhdon nga offset " + offset);
+            return "UPLOAD:" + existing.id + ":" + chunkSize + ":" + offset + ":" + window;
+        }
+
+        Files.createDirectories(uploadDir);
+        int id = nextId.getAndIncrement();
+        Path partial = uploadDir.resolve(filename + "." + id + ".part");
+        int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+
+        UploadSession session = new UploadSession(id, filename, key, partial, size, chunkSize, chunkCount, window,
+                digest);
+        UploadSession raced = uploadsByName.putIfAbsent(key, session);
+        if (raced != null) {
+            session.discard();
+            return "UPLOAD:" + raced.id + ":" + chunkSize + ":" + raced.resumeOffset() + ":" + window;
+        }
+        uploads.put(id, session);
+        return "UPLOAD:" + id + ":" + chunkSize + ":0:" + window;
+    }
+
+    public String commitUpload(int id) throws IOException {
+        UploadSession session = uploads.get(id);
+        if (session == null) return "Gabim: nuk ekziston upload me id " + id;
+
+        synchronized (session) {
+            if (!session.received.isComplete()) {
+                return "Gabim: upload-i nuk është i plotë (" + session.received.receivedCount()
+                        + "/" + session.chunkCount + " chunks)";
+            }
+            removeUpload(session);
+            try {
+                writeBehind.complete(session.target);
+            } catch (IOException e) {
+                session.discard();
+                System.out.println("[UPLOAD] " + session.filename + " nuk u shkrua në disk: " + e.getMessage());
+                return "Gabim: upload-i nuk u shkrua në disk (" + e.getMessage() + "). Provoni përsëri.";
+            }
+            session.channel.close();
+            // hash-i i llogaritur gjatë shkrimit; file-i rilexohet vetëm kur ai nuk e mbulon të gjithë
+            String digest = session.target.digest(session.size);
+            if (digest == null) digest = Utils.sha256(session.partial);
+            if (session.digest != null && !session.digest.equalsIgnoreCase(digest)) {
+                digestMismatches.increment();
+                session.discard();
+                System.out.println("[UPLOAD] " + session.filename + " u refuzua: SHA-256 nuk përputhet.");
+                return "Gabim: SHA-256 e file-it të marrë (" + digest + ") nuk përputhet me atë të dërguesit."
+                        + " Upload-i u hodh, provoni përsëri.";
+            }
+
+            Path target = Path.of(ServerConfig.BASE_DIR, session.filename);
+            if (fileManager != null) {
+                target = fileManager.storeUpload(session.partial, session.filename, digest);
+            } else {
+                Files.move(session.partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("[UPLOAD] " + session.filename + " (" + session.size + " bytes, " + digest + ") u ruajt.");
+            return "File u pranuar me sukses dhe u ruajt tek: " + target + " (SHA-256 " + digest + ")";
+        }
+    }
+
+    public void handleFrame(PacketSender sender, ByteBuffer frame, ClientHandler client) throws IOException {
+        byte type = TransferFrame.type(frame);
+        int id = TransferFrame.transferId(frame);
+
+        if (type == TransferFrame.ACK) {
+            DownloadSession session = sessions.get(id);
+            if (session == null) {
+                FanoutSession fanout = fanouts.get(id);
+                if (fanout != null) onFanoutAck(fanout, frame, client);
+                return;
+            }
+            if (session.client != client) return;
+            if (session.onAck(frame)) {
+                finish(session);
+            }
+        } else if (type == TransferFrame.UPLOAD) {
+            UploadSession session = uploads.get(id);
+            if (session == null || !client.isAdmin()) return;
+            session.onData(sender, frame, client);
+        }
+    }
+
+    public int activeTransfers() {
+        return sessions.size() + uploads.size() + fanouts.size();
+    }
+
+    private void onFanoutAck(FanoutSession fanout, ByteBuffer frame, ClientHandler client) throws IOException {
+        long now = System.currentTimeMillis();
+        if (!fanout.onAck(client, frame, now)) return;
+        fanoutReceivers.increment();
+        fanoutDeliveredBytes.add(fanout.size);
+        finishFanout(fanout, now);
+    }
+
+    private void pumpFanouts() {
+        if (fanouts.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        for (FanoutSession fanout : fanouts.values()) {
+            try {
+                if (!finishFanout(fanout, now)) fanout.tick(now);
+            } catch (IOException e) {
+                System.err.println("Gabim në fan-out " + fanout.id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // sesioni mbyllet kur nuk ka më marrës; nën kyçin e fanoutsByKey që një marrës i ri të mos i bashkohet
+    private boolean finishFanout(FanoutSession fanout, long now) {
+        synchronized (fanoutsByKey) {
+            if (!fanout.expire(now)) return false;
+            fanoutsByKey.remove(fanout.key, fanout);
+        }
+        if (fanouts.remove(fanout.id, fanout)) {
+            fanoutMulticastBytes.add(fanout.multicastBytes());
+            fanoutRepairBytes.add(fanout.repairBytes());
+            fanout.close();
+            System.out.println("[FANOUT] Sesioni " + fanout.id + " u mbyll.");
+        }
+        return true;
+    }
+
+    public String getFanoutStats() {
+        long multicast = fanoutMulticastBytes.sum();
+        long repair = fanoutRepairBytes.sum();
+        int receivers = 0;
+        for (FanoutSession fanout : fanouts.values()) {
+            multicast += fanout.multicastBytes();
+            repair += fanout.repairBytes();
+            receivers += fanout.memberCount();
+        }
+        long delivered = fanoutDeliveredBytes.sum();
+        return ">> Fan-out (" + (fanoutGroup != null ? fanoutGroup.getAddress().getHostAddress() + ":"
+                + fanoutGroup.getPort() : ServerConfig.FANOUT_GROUP) + "):\n"
+                + " - Sesione aktive: " + fanouts.size() + " | marrës aktivë: " + receivers
+                + " | shkarkime të përfunduara: " + fanoutReceivers.sum() + "\n"
+                + " - Multicast: " + Utils.formatFileSize(multicast) + " | riparime unicast: "
+                + Utils.formatFileSize(repair) + " | dorëzuar: " + Utils.formatFileSize(delivered)
+                + (delivered > 0 ? String.format(" | egress/dorëzuar: %.2f", (double) (multicast + repair) / delivered) : "")
+                + "\n";
+    }
+
+    public String getLimitStats() {
+        StringBuilder sb = new StringBuilder();
+        if (rateLimits != null) sb.append(rateLimits.getStats());
+        long losses = lossEvents.sum();
+        long expired = timeouts.sum();
+        int windows = 0;
+        long windowSum = 0;
+        for (DownloadSession session : sessions.values()) {
+            if (session.congestion == null) continue;
+            losses += session.congestion.lossEvents();
+            expired += session.congestion.timeouts();
+            windowSum += session.congestion.window();
+            windows++;
+        }
+        sb.append(" - Mbingarkesa (").append(ServerConfig.CONGESTION_CONTROL ? "aimd" : "joaktive").append("): ")
+                .append("dritare mesatare ").append(windows > 0 ? windowSum / windows : 0).append(" chunks")
+                .append(" | humbje ").append(losses)
+                .append(" | skadime ").append(expired).append("\n");
+        sb.append(writeBehind.getStats());
+        sb.append(" - Integriteti: chunks me CRC32C të gabuar ").append(checksumFailures.sum())
+                .append(" | upload-e të refuzuara (SHA-256) ").append(digestMismatches.sum()).append("\n");
+        if (fecMode != 0) {
+            long recovered = parityRecovered.sum();
+            int groups = 0;
+            long groupSum = 0;
+            for (DownloadSession session : sessions.values()) {
+                recovered += session.recovered;
+                if (session.group == 0) continue;
+                groupSum += session.group;
+                groups++;
+            }
+            sb.append(" - FEC (").append(fecMode < 0 ? "auto" : "k=" + fecMode).append("): paritete ")
+                    .append(parityFrames.sum()).append(" (").append(Utils.formatFileSize(parityBytes.sum())).append(")")
+                    .append(" | chunks të rindërtuar nga klientët ").append(recovered)
+                    .append(" | grup mesatar i aktivëve ").append(groups > 0 ? groupSum / groups : 0).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private void checkTimeouts() {
+        long now = System.currentTimeMillis();
+        for (DownloadSession session : sessions.values()) {
+            try {
+                if (session.isIdle(now)) {
+                    System.out.println("[DOWNLOAD] Transferimi " + session.id + " u ndërpre (pa ACK).");
+                    finish(session);
+                } else {
+                    session.retransmitExpired(now);
+                }
+            } catch (IOException e) {
+                System.err.println("Gabim gjatë ritransmetimit: " + e.getMessage());
+                finish(session);
+            }
+        }
+        for (UploadSession session : uploads.values()) {
+            if (session.isExpired(now)) {
+                System.out.println("[UPLOAD] Upload-i i papërfunduar për " + session.filename + " skadoi.");
+                removeUpload(session);
+                session.discard();
+            }
+        }
+    }
+
+    private void finish(DownloadSession session) {
+        if (sessions.remove(session.id, session)) {
+            if (session.congestion != null) {
+                lossEvents.add(session.congestion.lossEvents());
+                timeouts.add(session.congestion.timeouts());
+            }
+            parityRecovered.add(session.recovered);
+            session.close();
+        }
+    }
+
+    private void removeUpload(UploadSession session) {
+        uploads.remove(session.id, session);
+        uploadsByName.remove(session.key, session);
+    }
+
+    private static final double INITIAL_LOSS = 0.01;
+    private static final int LOSS_SAMPLE = 64;
+
+    private class DownloadSession extends SendWindow {
+        private final int id;
+        private final PacketSender sender;
+        private final ClientHandler client;
+        private final ChunkSource source;
+        private final long size;
+        private final int chunkSize;
+        private final ByteBuffer[] burst;
+        private final TokenBucket pacer;
+        private final CongestionControl congestion;
+        private final Compression.Codec codec;
+        private final ByteBuffer raw;
+        // XOR i grupit të hapur, me vend për k-në para tij; null kur udp.fec=off
+        private final ByteBuffer parity;
+
+        private boolean started;
+        private long lastAck;
+        private int pending;
+        // chunks të rinj dalin gjithmonë në rend, çdo seq nën këtë është ridërgim
+        private int sentNew;
+        private int group;
+        private int groupStart;
+        private int groupFill;
+        private int groupLength;
+        // humbja e vlerësuar nga ridërgimet plus chunks që klienti i rindërtoi (ata nuk ridërgohen)
+        private double loss = INITIAL_LOSS;
+        private int sampleNew;
+        private int sampleLost;
+        private int recovered;
+        // kur doli pariteti i grupit të çdo chunk-u në dritare: -1 grup ende i hapur, 0 pa paritet
+        private final long[] parityAt;
+        private final BitSet resent = new BitSet();
+        private long rtt = ServerConfig.RETRANSMIT_MS / 2;
+
+        DownloadSession(int id, PacketSender sender, ClientHandler client, ChunkSource source,
+                        int chunkSize, int chunkCount, int window, TokenBucket pacer, Compression.Codec codec) {
+            super(chunkCount, window, 0);
+            this.pacer = pacer;
+            this.codec = codec;
+            this.raw = codec != Compression.Codec.NONE ? ByteBuffer.allocate(chunkSize) : null;
+            this.congestion = ServerConfig.CONGESTION_CONTROL ? new CongestionControl(window) : null;
+            this.id = id;
+            this.sender = sender;
+            this.client = client;
+            this.source = source;
+            this.size = source.size();
+            this.chunkSize = chunkSize;
+            this.parity = fecMode != 0 ? ByteBuffer.allocate(Parity.HEADER_SIZE + chunkSize) : null;
+            this.parityAt = fecMode != 0 ? new long[window] : null;
+            this.group = fecMode > 0 ? fecMode : Parity.groupSize(loss);
+            int frameSize = TransferFrame.DATA_HEADER_SIZE + chunkSize + (parity != null ? Parity.HEADER_SIZE : 0);
+            this.burst = new ByteBuffer[Math.min(ServerConfig.IO_BATCH, window)];
+            for (int i = 0; i < burst.length; i++) {
+                burst[i] = sender.prefersDirect() ? ByteBuffer.allocateDirect(frameSize) : ByteBuffer.allocate(frameSize);
+            }
+            this.lastAck = System.currentTimeMillis();
+        }
+
+        synchronized boolean onAck(ByteBuffer ack) throws IOException {
+            long now = System.currentTimeMillis();
+            lastAck = now;
+            started = true;
+            int reported = TransferFrame.ackRecovered(ack);
+            if (reported > recovered) {
+                sampleLost += reported - recovered;
+                recovered = reported;
+            }
+            // RTT nga chunk-u më i ri i konfirmuar kumulativisht, vetëm kur nuk është ridërguar
+            int cumulative = Math.min(TransferFrame.ackCumulative(ack), chunkCount);
+            if (parity != null && cumulative > base() && cumulative <= next() && !resent.get(cumulative - 1)) {
+                rtt = (7 * rtt + now - sentAt(cumulative - 1)) / 8;
+            }
+            try {
+                return onAck(ack, now, ServerConfig.RETRANSMIT_MS / 4);
+            } finally {
+                flush();
+            }
+        }
+
+        // me kufij shpejtësie dritarja mbushet edhe nga timer-i, jo vetëm kur vjen ACK
+        synchronized void retransmitExpired(long now) throws IOException {
+            if (!started) return;
+            try {
+                retransmitExpired(now, ServerConfig.RETRANSMIT_MS);
+                fill(now);
+            } finally {
+                flush();
+            }
+        }
+
+        // chunks e përgatitur nga një ACK ose tik i timer-it dalin bashkë; frame-t ripërdoren pas dërgimit
+        private void flush() throws IOException {
+            if (pending == 0) return;
+            try {
+                sender.sendBatch(burst, pending, client.getSocketAddress());
+                IoStats.burst();
+            } finally {
+                pending = 0;
+            }
+        }
+
+        @Override
+        protected boolean canSendNew() {
+            if (congestion != null && inFlight() >= congestion.window()) return false;
+            if (pacer != null && !pacer.hasTokens()) return false;
+            return rateLimits == null || rateLimits.canSend(client);
+        }
+
+        @Override
+        protected void onAdvance(int acked) {
+            if (congestion != null) congestion.onAdvance(acked);
+        }
+
+        @Override
+        protected void onLoss() {
+            if (congestion != null) congestion.onLoss(base(), next());
+        }
+
+        @Override
+        protected void onTimeout() {
+            if (congestion != null) congestion.onTimeout(base(), next());
+        }
+
+        // vrima në një grup me paritet pret sa një RTT pasi pariteti del, që ACK-u të sjellë rindërtimin
+        @Override
+        protected boolean deferLoss(int seq, long now) {
+            if (parityAt == null) return false;
+            long at = parityAt[seq % window];
+            return at < 0 || (at > 0 && now - at < rtt + ServerConfig.RETRANSMIT_MS / 4);
+        }
+
+        synchronized boolean isIdle(long now) {
+            return now - lastAck > ServerConfig.TRANSFER_IDLE_MS;
+        }
+
+        @Override
+        protected void sendChunk(int seq) throws IOException {
+            long position = (long) seq * chunkSize;
+            int length = (int) Math.min(chunkSize, size - position);
+
+            // chunk-u kopjohet nga cache, harta ose kanali direkt në frame, pa kaluar në heap; clear() sepse
+            // chunk-u i fundit i shkurtër e lë limit-in më poshtë se një ridërgim i plotë pas tij
+            ByteBuffer frame = burst[pending].clear();
+            byte type = TransferFrame.DATA;
+            int payload = length;
+            if (raw == null) {
+                source.copyTo(frame, TransferFrame.DATA_HEADER_SIZE, position, length);
+            } else {
+                raw.clear();
+                source.copyTo(raw, 0, position, length);
+                raw.clear().limit(length);
+                frame.position(TransferFrame.DATA_HEADER_SIZE);
+                int compressed = Compression.compress(codec, raw, frame);
+                if (compressed >= 0) {
+                    type |= TransferFrame.COMPRESSED;
+                    payload = compressed;
+                } else {
+                    frame.put(TransferFrame.DATA_HEADER_SIZE, raw, 0, length);
+                }
+            }
+
+            TransferFrame.writeHeader(frame, type, id, seq);
+            TransferFrame.writeChecksum(frame, payload);
+            boolean fresh = seq == sentNew;
+            if (fresh) {
+                sentNew++;
+                if (++sampleNew >= LOSS_SAMPLE) adapt();
+                if (parityAt != null) parityAt[seq % window] = 0;
+            } else {
+                sampleLost++;
+                resent.set(seq);
+                if (parityAt != null) parityAt[seq % window] = 0;
+            }
+            if (fresh && parity != null && group > 0) {
+                if (raw == null) {
+                    addToGroup(seq, frame, TransferFrame.DATA_HEADER_SIZE, length);
+                } else {
+                    addToGroup(seq, raw, 0, length);
+                }
+            }
+            sent(TransferFrame.DATA_HEADER_SIZE + payload);
+            if (groupFill > 0 && (groupFill >= group || seq == chunkCount - 1)) sendParity();
+        }
+
+        private void sent(int wire) throws IOException {
+            burst[pending].clear().limit(wire);
+            if (++pending == burst.length) flush();
+            if (pacer != null) pacer.consume(wire);
+            if (rateLimits != null) rateLimits.onSent(client, wire);
+
+            if (trafficMonitor != null) {
+                trafficMonitor.recordMessageSent(wire, client);
+            }
+        }
+
+        private void addToGroup(int seq, ByteBuffer data, int offset, int length) {
+            parityAt[seq % window] = -1;
+            if (groupFill == 0) {
+                groupStart = seq;
+                groupLength = 0;
+                Arrays.fill(parity.array(), (byte) 0);
+            }
+            Parity.xor(parity, Parity.HEADER_SIZE, data, offset, length);
+            groupLength = Math.max(groupLength, length);
+            groupFill++;
+        }
+
+        // me udp.fec=auto grupi ndiqet nga humbja e matur në mostra prej LOSS_SAMPLE chunks të rinj
+        private void adapt() {
+            double sample = (double) sampleLost / sampleNew;
+            loss = 0.75 * loss + 0.25 * sample;
+            sampleNew = 0;
+            sampleLost = 0;
+            if (fecMode < 0) group = Parity.groupSize(loss);
+        }
+
+        private void sendParity() throws IOException {
+            ByteBuffer frame = burst[pending].clear();
+            parity.putShort(0, (short) groupFill);
+            int payload = Parity.HEADER_SIZE + groupLength;
+            frame.put(TransferFrame.DATA_HEADER_SIZE, parity, 0, payload);
+            TransferFrame.writeHeader(frame, TransferFrame.PARITY, id, groupStart);
+            TransferFrame.writeChecksum(frame, payload);
+            long now = System.currentTimeMillis();
+            for (int seq = groupStart; seq < groupStart + groupFill; seq++) {
+                if (parityAt[seq % window] < 0) parityAt[seq % window] = now;
+            }
+            groupFill = 0;
+            parityFrames.increment();
+            parityBytes.add(TransferFrame.DATA_HEADER_SIZE + payload);
+            sent(TransferFrame.DATA_HEADER_SIZE + payload);
+        }
+
+        synchronized void close() {
+            source.close();
+        }
+    }
+
+    private class UploadSession {
+        private final int id;
+        private final String filename;
+        private final String key;
+        private final Path partial;
+        private final long size;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final FileChannel channel;
+        private final WriteBehind.Target target;
+        private final ReceiveWindow received;
+        private final byte[] ackFrame;
+        private final int ackEvery;
+        private final String digest;
+
+        private ByteBuffer inflated;
+        private int sinceAck;
+        private long lastActivity;
+
+        UploadSession(int id, String filename, String key, Path partial, long size,
+                      int chunkSize, int chunkCount, int window, String digest) throws IOException {
+            this.id = id;
+            this.digest = digest;
+            this.filename = filename;
+            this.key = key;
+            this.partial = partial;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = chunkCount;
+            this.received = new ReceiveWindow(chunkCount, window);
+            this.ackFrame = new byte[ReceiveWindow.ackFrameSize(window)];
+            this.ackEvery = Math.max(1, window / 8);
+            this.lastActivity = System.currentTimeMillis();
+
+            RandomAccessFile file = new RandomAccessFile(partial.toFile(), "rw");
+            file.setLength(size);
+            this.channel = file.getChannel();
+            this.target = writeBehind.open(channel);
+        }
+
+        synchronized long resumeOffset() {
+            lastActivity = System.currentTimeMillis();
+            return (long) received.cumulative() * chunkSize;
+        }
+
+        synchronized void onData(PacketSender sender, ByteBuffer frame, ClientHandler client) throws IOException {
+            lastActivity = System.currentTimeMillis();
+            int seq = TransferFrame.sequence(frame);
+            if (seq < 0 || seq >= chunkCount || !channel.isOpen()) return;
+            // chunk-u i dëmtuar nuk konfirmohet, SACK-u e kërkon përsëri
+            if (!TransferFrame.checksumMatches(frame)) {
+                checksumFailures.increment();
+                return;
+            }
+
+            boolean duplicate = received.isReceived(seq);
+            if (!duplicate) {
+                long position = (long) seq * chunkSize;
+                int expected = (int) Math.min(chunkSize, size - position);
+                if (inflated == null && TransferFrame.isCompressed(frame)) inflated = ByteBuffer.allocate(chunkSize);
+                ByteBuffer chunk = TransferFrame.chunkData(frame, inflated, expected);
+                // gjatësi e gabuar: chunk-u hidhet dhe ACK-u i gjendjes së tanishme e kërkon përsëri
+                if (chunk == null) {
+                    sendAck(sender, client);
+                    return;
+                }
+                // me radhën e diskut plot chunk-u as nuk konfirmohet, dërguesi e ridërgon më vonë
+                if (!writeBehind.submit(target, position, chunk)) return;
+                received.markReceived(seq);
+            }
+
+            // duplikatat dhe vrimat kërkojnë ACK të menjëhershëm, përndryshe ACK çdo ackEvery chunks
+            sinceAck++;
+            boolean gap = seq > received.cumulative();
+            if (duplicate || gap || sinceAck >= ackEvery || received.isComplete()) {
+                sendAck(sender, client);
+            }
+        }
+
+        private void sendAck(PacketSender sender, ClientHandler client) throws IOException {
+            int length = received.writeAck(ackFrame, id);
+            sender.send(ByteBuffer.wrap(ackFrame, 0, length), client.getSocketAddress());
+            sinceAck = 0;
+            if (trafficMonitor != null) {
+                trafficMonitor.recordMessageSent(length, client);
+            }
+        }
+
+        synchronized boolean isExpired(long now) {
+            return now - lastActivity > ServerConfig.UPLOAD_RESUME_MS;
+        }
+
+        synchronized void discard() {
+            try {
+                channel.close();
+                Files.deleteIfExists(partial);
+            } catch (IOException e) {
+                System.err.println("Gabim gjatë fshirjes së upload-it: " + e.getMessage());
+            }
+        }
+    }
+}
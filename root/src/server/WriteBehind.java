@@ -0,0 +1,289 @@
+package server;
+
+import common.BlockSignatures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// etapa e shkrimit në disk për upload-et: thread-i i rrjetit vetëm kopjon chunk-un në radhë, writer-at bëjnë
+// shkrimet pozicionale (një shkrim i vetëm për chunks të njëpasnjëshëm) dhe force()-in sipas politikës.
+// Çdo file i përket një writer-i, kështu shkrimet e tij nuk garojnë me njëri-tjetrin. Writer-i llogarit edhe
+// SHA-256 e file-it ndërsa shkruan, që commit-i të mos e rilexojë të gjithë
+class WriteBehind {
+    private static final int MAX_BATCH = 256;
+    private static final int MAX_GATHER = 64;
+
+    enum Durability {
+        // kurrë force(), si më parë
+        OFF,
+        // pas çdo grupi shkrimesh në file: një force() për të gjithë chunks e nxjerrë bashkë nga radha
+        FILE,
+        // file-t e ndryshuar bëhen force() së bashku çdo intervalMs
+        INTERVAL,
+        // një herë, kur upload-i mbyllet dhe para se të ruhet
+        COMMIT;
+
+        static Durability parse(String name) {
+            for (Durability durability : values()) {
+                if (durability.name().equalsIgnoreCase(name)) return durability;
+            }
+            return COMMIT;
+        }
+    }
+
+    private final Writer[] writers;
+    private final BufferPool buffers;
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final Durability durability;
+    private final int intervalMs;
+    private final AtomicInteger nextTarget = new AtomicInteger();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder forces = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    WriteBehind(int threads, int queueCapacity, int chunkSize, Durability durability, int intervalMs) {
+        this.durability = durability;
+        this.intervalMs = Math.max(1, intervalMs);
+        this.chunkSize = chunkSize;
+        this.writers = new Writer[Math.max(1, threads)];
+        this.queueCapacity = Math.max(1, queueCapacity / writers.length);
+        this.buffers = new BufferPool(this.queueCapacity * writers.length, chunkSize);
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Writer(this.queueCapacity);
+            Thread t = new Thread(writers[i], "upload-writer-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    Target open(FileChannel channel) {
+        int id = nextTarget.getAndIncrement();
+        return new Target(id, channel, writers[Math.floorMod(id, writers.length)]);
+    }
+
+    // kopjon chunk-un në radhë; false kur radha e writer-it është plot, atëherë chunk-u nuk konfirmohet dhe
+    // dritarja e dërguesit ndalet derisa disku të arrijë
+    boolean submit(Target target, long position, ByteBuffer data) {
+        if (target.writer.queue.remainingCapacity() == 0) {
+            rejected.increment();
+            return false;
+        }
+        ByteBuffer copy = buffers.acquire();
+        copy.put(data).flip();
+        synchronized (target) {
+            target.pending++;
+        }
+        if (!target.writer.queue.offer(new Write(target, position, copy))) {
+            target.done(1, null);
+            buffers.release(copy);
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // pret shkrimet e mbetura të file-it dhe, përveç OFF, e bën të qëndrueshëm para se upload-i të ruhet
+    void complete(Target target) throws IOException {
+        synchronized (target) {
+            while (target.pending > 0) {
+                try {
+                    target.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Pritja e shkrimeve u ndërpre");
+                }
+            }
+            if (target.failure != null) throw target.failure;
+        }
+        if (durability != Durability.OFF) force(target);
+    }
+
+    private void force(Target target) throws IOException {
+        if (!target.dirty) return;
+        target.dirty = false;
+        target.channel.force(false);
+        forces.increment();
+    }
+
+    String getStats() {
+        int queued = 0;
+        for (Writer writer : writers) queued += writer.queue.size();
+        long written = chunks.sum();
+        long calls = writes.sum();
+        return String.format(" - Shkrimi i upload-eve (%d writer, fsync %s): radha %d/%d | %d chunks në %d shkrime"
+                        + " (%.1f/shkrim) | force %d | refuzuar (radha plot) %d\n",
+                writers.length, durability.name().toLowerCase(), queued, queueCapacity * writers.length,
+                written, calls, calls > 0 ? (double) written / calls : 0.0, forces.sum(), rejected.sum());
+    }
+
+    static class Target {
+        private final int id;
+        private final FileChannel channel;
+        private final Writer writer;
+        private int pending;
+        private volatile boolean dirty;
+        private IOException failure;
+        // prefiksi i file-it i futur në hash; chunks që mbërrijnë para vrimës mbahen si pozicion → gjatësi dhe
+        // lexohen përsëri nga kanali kur vrima mbushet. Të dyja preken vetëm nga writer-i i file-it
+        private final MessageDigest sha256 = BlockSignatures.digest("SHA-256");
+        private final TreeMap<Long, Integer> ahead = new TreeMap<>();
+        private long hashed;
+
+        Target(int id, FileChannel channel, Writer writer) {
+            this.id = id;
+            this.channel = channel;
+            this.writer = writer;
+        }
+
+        // SHA-256 e file-it pasi complete() është kthyer; null kur shkrimet nuk e mbuluan të gjithë file-in
+        String digest(long size) {
+            synchronized (this) {
+                if (failure != null || hashed != size || !ahead.isEmpty()) return null;
+            }
+            return HexFormat.of().formatHex(sha256.digest());
+        }
+
+        private void hash(long position, ByteBuffer data, ByteBuffer scratch) throws IOException {
+            if (position != hashed) {
+                if (position > hashed) ahead.put(position, data.remaining());
+                return;
+            }
+            hashed += data.remaining();
+            sha256.update(data);
+            Map.Entry<Long, Integer> next;
+            while ((next = ahead.firstEntry()) != null && next.getKey() == hashed) {
+                ahead.pollFirstEntry();
+                scratch.clear().limit(next.getValue());
+                long at = hashed;
+                while (scratch.hasRemaining()) {
+                    if (channel.read(scratch, at) < 0) throw new IOException("File-i i upload-it u shkurtua");
+                    at = hashed + scratch.position();
+                }
+                hashed += next.getValue();
+                sha256.update(scratch.flip());
+            }
+        }
+
+        synchronized void done(int count, IOException error) {
+            pending -= count;
+            if (error != null && failure == null) failure = error;
+            if (pending == 0) notifyAll();
+        }
+    }
+
+    private record Write(Target target, long position, ByteBuffer data) {}
+
+    private class Writer implements Runnable {
+        private final ArrayBlockingQueue<Write> queue;
+        private final List<Write> batch = new ArrayList<>();
+        private final Set<Target> touched = new LinkedHashSet<>();
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        private final ByteBuffer scratch = ByteBuffer.allocate(chunkSize);
+        private long lastForce = System.currentTimeMillis();
+
+        Writer(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Write first = durability == Durability.INTERVAL
+                            ? queue.poll(intervalMs, TimeUnit.MILLISECONDS) : queue.take();
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, MAX_BATCH - 1);
+                        write();
+                        batch.clear();
+                    }
+                    if (durability == Durability.FILE
+                            || durability == Durability.INTERVAL && System.currentTimeMillis() - lastForce >= intervalMs) {
+                        forceTouched();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        // sipas file-it dhe pozicionit, që chunks e njëpasnjëshëm të dalin me një shkrim mbledhës
+        private void write() {
+            batch.sort(Comparator.comparingInt((Write w) -> w.target.id).thenComparingLong(Write::position));
+            int from = 0;
+            while (from < batch.size()) {
+                Target target = batch.get(from).target;
+                long end = batch.get(from).position + batch.get(from).data.remaining();
+                int to = from + 1;
+                while (to < batch.size() && to - from < MAX_GATHER && batch.get(to).target == target
+                        && batch.get(to).position == end) {
+                    end += batch.get(to).data.remaining();
+                    to++;
+                }
+                writeRun(target, from, to);
+                if (durability == Durability.FILE || durability == Durability.INTERVAL) touched.add(target);
+                from = to;
+            }
+        }
+
+        private void writeRun(Target target, int from, int to) {
+            IOException error = null;
+            int count = to - from;
+            try {
+                long position = batch.get(from).position;
+                if (count == 1) {
+                    ByteBuffer data = batch.get(from).data;
+                    while (data.hasRemaining()) position += target.channel.write(data, position);
+                } else {
+                    long remaining = 0;
+                    for (int i = 0; i < count; i++) {
+                        gather[i] = batch.get(from + i).data;
+                        remaining += gather[i].remaining();
+                    }
+                    // pozicioni i kanalit përdoret vetëm nga ky writer
+                    target.channel.position(position);
+                    while (remaining > 0) remaining -= target.channel.write(gather, 0, count);
+                }
+                target.dirty = true;
+                writes.increment();
+                chunks.add(count);
+                for (int i = from; i < to; i++) target.hash(batch.get(i).position, batch.get(i).data.rewind(), scratch);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                for (int i = from; i < to; i++) buffers.release(batch.get(i).data);
+                Arrays.fill(gather, null);
+                target.done(count, error);
+            }
+        }
+
+        private void forceTouched() {
+            lastForce = System.currentTimeMillis();
+            for (Target target : touched) {
+                try {
+                    force(target);
+                } catch (IOException e) {
+                    // file-i i një upload-i të hedhur mund të jetë mbyllur ndërkohë
+                }
+            }
+            touched.clear();
+        }
+    }
+}